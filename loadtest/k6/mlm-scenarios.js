@@ -0,0 +1,93 @@
+// Load test scenarios for the MLM API.
+//
+// 1. Load a synthetic network (writes target/loadtest-users.csv):
+//      ./mvnw spring-boot:run -Dspring-boot.run.main-class=com.blockstars.blockstarsassignment.loadtest.SyntheticNetworkGenerator
+// 2. Start the application, then run:
+//      k6 run loadtest/k6/mlm-scenarios.js
+//    Override rates and target with e.g. -e BASE_URL=http://localhost:8080 -e COMMISSIONS_RPS=500
+//
+// k6 prints p(50), p(90), p(95) and p(99) latencies per scenario; the thresholds below fail the run
+// when the p99 budget is exceeded.
+
+import http from 'k6/http';
+import encoding from 'k6/encoding';
+import { check } from 'k6';
+import { SharedArray } from 'k6/data';
+import exec from 'k6/execution';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const API = `${BASE_URL}/api/v1/users`;
+const DURATION = __ENV.DURATION || '5m';
+const AUTH = 'Basic ' + encoding.b64encode(`${__ENV.USERNAME || 'admin'}:${__ENV.PASSWORD || 'admin'}`);
+
+const users = new SharedArray('users', () =>
+    open(__ENV.USERS_FILE || '../../target/loadtest-users.csv')
+        .split('\n')
+        .slice(1)
+        .filter((line) => line.length > 0)
+        .map((line) => {
+            const [userId, email] = line.split(',');
+            return { userId, email };
+        }));
+
+function scenario(exec, rps) {
+    return {
+        executor: 'constant-arrival-rate',
+        exec,
+        rate: Number(rps),
+        timeUnit: '1s',
+        duration: DURATION,
+        preAllocatedVUs: Math.max(10, Number(rps)),
+        maxVUs: Math.max(50, Number(rps) * 4),
+        tags: { endpoint: exec },
+    };
+}
+
+export const options = {
+    scenarios: {
+        register: scenario('register', __ENV.REGISTER_RPS || 20),
+        refer: scenario('refer', __ENV.REFER_RPS || 50),
+        commissions: scenario('commissions', __ENV.COMMISSIONS_RPS || 200),
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(90)', 'p(95)', 'p(99)', 'max'],
+    thresholds: {
+        'http_req_failed': ['rate<0.01'],
+        'http_req_duration{endpoint:register}': ['p(99)<1000'],
+        'http_req_duration{endpoint:refer}': ['p(99)<500'],
+        'http_req_duration{endpoint:commissions}': ['p(99)<500'],
+    },
+};
+
+function randomUser() {
+    return users[Math.floor(Math.random() * users.length)];
+}
+
+export function register() {
+    const id = `${exec.scenario.iterationInTest}-${exec.vu.idInTest}-${Date.now()}`;
+    const payload = JSON.stringify({
+        fullName: `K6 User ${id}`,
+        email: `k6-${id}@loadtest.local`,
+        password: 'password',
+        totalSales: (Math.random() * 10000).toFixed(2),
+    });
+    const res = http.post(`${API}/register`, payload, {
+        headers: { 'Content-Type': 'application/json', Authorization: AUTH },
+    });
+    check(res, { 'register 200': (r) => r.status === 200 });
+}
+
+export function refer() {
+    const referrer = randomUser();
+    const referred = randomUser();
+    const level = 1 + Math.floor(Math.random() * 3);
+    const url = `${API}/refer?referrerId=${referrer.userId}`
+        + `&referredEmail=${encodeURIComponent(referred.email)}&level=${level}`;
+    const res = http.post(url, null, { headers: { Authorization: AUTH } });
+    check(res, { 'refer 200': (r) => r.status === 200 });
+}
+
+export function commissions() {
+    const user = randomUser();
+    const res = http.get(`${API}/commissions?userId=${user.userId}`, { headers: { Authorization: AUTH } });
+    check(res, { 'commissions 200': (r) => r.status === 200 });
+}
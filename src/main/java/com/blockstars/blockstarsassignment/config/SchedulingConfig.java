@@ -0,0 +1,15 @@
+package com.blockstars.blockstarsassignment.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables the scheduled jobs (sales flush, commission archival). Turned off with scheduling.enabled=false,
+ * e.g. by one-shot profiles that must exit when done.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "scheduling.enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfig {
+}
@@ -2,6 +2,7 @@ package com.blockstars.blockstarsassignment.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -22,6 +23,10 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                     .antMatchers("/api/users/register").permitAll()
                     .antMatchers("/api/users/refer").authenticated()
                     .antMatchers("/api/users/commissions").hasRole("ADMIN")
+                    // Sales change total_sales and with it the commissions of every upline
+                    .antMatchers(HttpMethod.POST, "/api/v1/users/sales").hasRole("ADMIN")
+                    .antMatchers("/actuator/health").permitAll()
+                    .antMatchers("/actuator/**").hasRole("ADMIN")
                     .anyRequest().authenticated())
             .httpBasic(); // This enables basic authentication
     }
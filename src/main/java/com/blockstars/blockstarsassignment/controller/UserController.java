@@ -1,14 +1,29 @@
 package com.blockstars.blockstarsassignment.controller;
 
-import com.blockstars.blockstarsassignment.domain.Commission;
-import com.blockstars.blockstarsassignment.domain.User;
+import com.blockstars.blockstarsassignment.dto.CommissionDto;
+import com.blockstars.blockstarsassignment.dto.SalesEventDto;
 import com.blockstars.blockstarsassignment.dto.UserDto;
+import com.blockstars.blockstarsassignment.service.CommissionVersionService;
+import com.blockstars.blockstarsassignment.service.SalesEventService;
 import com.blockstars.blockstarsassignment.service.UserService;
+import com.blockstars.blockstarsassignment.sharding.ShardRouter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/v1/users")
@@ -17,9 +32,23 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private SalesEventService salesEventService;
+
+    @Autowired
+    private CommissionVersionService commissionVersionService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @PostMapping("/register")
     public ResponseEntity<String> registerUser(@RequestBody UserDto payload) {
-        userService.registerUser(payload);
+        // The id is assigned up front, it selects the shard the registration transaction runs on
+        String userId = UUID.randomUUID().toString();
+        shardRouter.registerUser(userId, payload.getEmail(), id -> userService.registerUser(id, payload));
         return ResponseEntity.ok("User registered successfully");
     }
 
@@ -33,13 +62,61 @@ public class UserController {
             return ResponseEntity.badRequest().body("Invalid level. Level cannot be greater than 3.");
         }
 
-        userService.referUser(referrerId, referredEmail, level);
+        // The referral is stored with the referrer, a referred user on another shard is recorded by id
+        Optional<String> remoteReferredId = shardRouter.findRemoteReferred(referrerId, referredEmail);
+        shardRouter.onShardOf(referrerId, () -> {
+            if (remoteReferredId.isPresent()) {
+                userService.referRemoteUser(referrerId, remoteReferredId.get(), level);
+            } else {
+                userService.referUser(referrerId, referredEmail, level);
+            }
+            return null;
+        });
         return ResponseEntity.ok("Referral recorded successfully");
     }
 
 
     @GetMapping("/commissions")
-    public ResponseEntity<List<Commission>> viewCommissions(@RequestParam String userId) {
-        return ResponseEntity.ok(userService.viewCommissions(userId));
+    public ResponseEntity<List<CommissionDto>> viewCommissions(@RequestParam String userId, WebRequest request) {
+        // Clients must revalidate every time, an unchanged version is answered with 304 without touching the database
+        CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+        Optional<String> version = commissionVersionService.getETag(userId);
+        if (!version.isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+        String eTag = version.get();
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok().eTag(eTag).cacheControl(cacheControl).body(shardRouter.onShardOf(userId, () -> userService.viewCommissions(userId)));
+    }
+
+    @PostMapping(value = "/sales", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> ingestSales(@RequestBody List<SalesEventDto> events) {
+        return ingest(events);
+    }
+
+    @PostMapping(value = "/sales", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<String> ingestSalesStream(InputStream body) throws IOException {
+        List<SalesEventDto> events;
+        try (MappingIterator<SalesEventDto> iterator = objectMapper.readerFor(SalesEventDto.class).readValues(body)) {
+            events = iterator.readAll();
+        } catch (JsonProcessingException e) {
+            return ResponseEntity.badRequest().body("Malformed sales event: " + e.getOriginalMessage());
+        }
+        return ingest(events);
+    }
+
+    private ResponseEntity<String> ingest(List<SalesEventDto> events) {
+        try {
+            int accepted = salesEventService.ingest(events);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body("Accepted " + accepted + " sales events");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            // Window full: nothing of this request was applied, the client can retry it as is
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(e.getMessage());
+        }
     }
 }
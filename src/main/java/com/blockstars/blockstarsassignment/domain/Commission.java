@@ -1,7 +1,6 @@
 package com.blockstars.blockstarsassignment.domain;
 
 import javax.persistence.*;
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
@@ -13,14 +12,17 @@ public class Commission {
     @Column(name = "commission_id")
     private Long commissionId;
 
-    @ManyToOne
-    @JoinColumn(name = "user_id")
+    // Partitioned tables cannot have foreign keys, so no constraint is generated for user_id
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private User user;  // Reference to the User entity
 
     @Column(name = "commission_amount")
-    private BigDecimal commissionAmount;
+    @Convert(converter = MoneyConverter.class)
+    private Money commissionAmount;
 
-    @Column(name = "commission_date")
+    // Partition key of the commissions table, see CommissionArchiveService
+    @Column(name = "commission_date", nullable = false)
     private LocalDateTime commissionDate;
 
     @Column(name = "commission_type")
@@ -59,11 +61,11 @@ public class Commission {
         this.user = user;
     }
 
-    public BigDecimal getCommissionAmount() {
+    public Money getCommissionAmount() {
         return commissionAmount;
     }
 
-    public void setCommissionAmount(BigDecimal commissionAmount) {
+    public void setCommissionAmount(Money commissionAmount) {
         this.commissionAmount = commissionAmount;
     }
 
@@ -0,0 +1,149 @@
+package com.blockstars.blockstarsassignment.domain;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Objects;
+
+import org.hibernate.annotations.Immutable;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * Immutable monetary amount backed by a long number of minor units (cents).
+ * Entities hold amounts as Money, converted by {@link MoneyConverter}, so the commission
+ * engine works on cents only and BigDecimal is used at the JPA/JSON boundary.
+ * Serializable because the second-level cache stores it as part of cached entities.
+ */
+@Immutable
+public final class Money implements Comparable<Money>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Number of decimal places held by a Money amount. */
+    public static final int SCALE = 2;
+
+    /** Rounding mode applied whenever a value is reduced to {@link #SCALE}. */
+    public static final RoundingMode ROUNDING = RoundingMode.HALF_UP;
+
+    /** Scale of rates expressed in basis points (1 bp = 0.0001). */
+    public static final int RATE_SCALE = 4;
+
+    public static final Money ZERO = new Money(0L);
+
+    private static final long RATE_DIVISOR = 10_000L;
+
+    private final long minorUnits;
+
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+
+    /**
+     * Creates an amount from a number of minor units.
+     *
+     * @param minorUnits Amount in cents.
+     * @return The amount.
+     */
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0L ? ZERO : new Money(minorUnits);
+    }
+
+    /**
+     * Converts a BigDecimal into an amount, rounding to {@link #SCALE} with {@link #ROUNDING}.
+     *
+     * @param amount The amount to convert.
+     * @return The amount.
+     * @throws ArithmeticException if the amount does not fit in a long number of cents.
+     */
+    @JsonCreator
+    public static Money of(BigDecimal amount) {
+        Objects.requireNonNull(amount, "amount");
+        return ofMinor(amount.setScale(SCALE, ROUNDING).unscaledValue().longValueExact());
+    }
+
+    /**
+     * Converts a rate such as 0.10 into basis points.
+     *
+     * @param rate The rate to convert.
+     * @return The rate in basis points.
+     * @throws ArithmeticException if the rate has more than {@link #RATE_SCALE} decimal places.
+     */
+    public static long toBasisPoints(BigDecimal rate) {
+        return rate.setScale(RATE_SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Multiplies this amount by a rate expressed in basis points, rounding the result
+     * to the nearest cent with {@link #ROUNDING}.
+     *
+     * @param rateBasisPoints Rate in basis points, e.g. 1000 for 10%.
+     * @return The resulting amount.
+     * @throws ArithmeticException on overflow.
+     */
+    public Money multiplyByRate(long rateBasisPoints) {
+        return ofMinor(multiplyByRate(minorUnits, rateBasisPoints));
+    }
+
+    /**
+     * Allocation-free variant of {@link #multiplyByRate(long)} working on minor units.
+     *
+     * @param minorUnits      Amount in cents.
+     * @param rateBasisPoints Rate in basis points, e.g. 1000 for 10%.
+     * @return The resulting amount in cents.
+     * @throws ArithmeticException on overflow.
+     */
+    public static long multiplyByRate(long minorUnits, long rateBasisPoints) {
+        long product = Math.multiplyExact(minorUnits, rateBasisPoints);
+        long quotient = product / RATE_DIVISOR;
+        long remainder = product % RATE_DIVISOR;
+        // HALF_UP rounds ties away from zero, for both positive and negative amounts
+        if (Math.abs(remainder) * 2 >= RATE_DIVISOR) {
+            quotient += Long.signum(product);
+        }
+        return quotient;
+    }
+
+    public Money plus(Money other) {
+        return ofMinor(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    /**
+     * @return The amount as a BigDecimal with scale {@link #SCALE}.
+     */
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Money)) {
+            return false;
+        }
+        return minorUnits == ((Money) o).minorUnits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -3,9 +3,14 @@ package com.blockstars.blockstarsassignment.domain;
 import java.time.LocalDateTime;
 import javax.persistence.*;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "referrals")
 @Table(name = "user_referrals")
 public class Referral {
     
@@ -16,15 +21,22 @@ public class Referral {
     @Column(name= "level")
     private int level;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "referrer_id")
     @JsonIgnore
     private User referrer;
 
-    @ManyToOne
-    @JoinColumn(name = "referred_id")
+    // Read-only view of referred_id. With sharding the referred user can live on another shard, so there is
+    // no foreign key and only referrals of local users may be navigated, see UserService
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "referred_id", insertable = false, updatable = false,
+            foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private User referred;
 
+    @Column(name = "referred_id")
+    @JsonIgnore
+    private String referredId;
+
     @Column(name = "referral_date")
     private LocalDateTime referralDate;
 
@@ -70,6 +82,15 @@ public class Referral {
 
     public void setReferred(User referred) {
         this.referred = referred;
+        this.referredId = referred == null ? null : referred.getUId();
+    }
+
+    public String getReferredId() {
+        return referredId;
+    }
+
+    public void setReferredId(String referredId) {
+        this.referredId = referredId;
     }
 
     public LocalDateTime getReferralDate() {
@@ -1,25 +1,33 @@
 package com.blockstars.blockstarsassignment.domain;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.UUID;
 import javax.persistence.*;
 
-import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.springframework.data.domain.Persistable;
 
 import com.blockstars.blockstarsassignment.constants.UserRole;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
 @Table(name = "users")
-public class User {
+public class User implements Persistable<String> {
     
+    // Assigned before the insert transaction starts, the id decides the shard the user lives on
     @Id
-    @GeneratedValue(generator = "uuid")
-	@GenericGenerator(name = "uuid", strategy = "uuid2")
 	@Column(name = "u_id", unique = true, nullable = false, updatable = false)
     private String uId;
 
+    // Assigned ids make Spring Data merge by default, this keeps new users on the plain insert path
+    @Transient
+    @JsonIgnore
+    private boolean persisted;
+
     @Column(name = "full_name", nullable = false)
     private String fullName;
 
@@ -35,7 +43,8 @@ public class User {
     private UserRole role;
 
     @Column(name = "total_sales")
-    private BigDecimal totalSales;
+    @Convert(converter = MoneyConverter.class)
+    private Money totalSales;
 
     @OneToMany(mappedBy = "referrer", cascade = CascadeType.ALL)
     @JsonIgnore
@@ -53,11 +62,45 @@ public class User {
     @Column(name = "updated_ts",nullable = false, columnDefinition = "TIMESTAMP")
     private LocalDateTime updatedTs;
 
+    // Bumped by SQL only, see CommissionVersionService, so an entity update never writes back a stale value
+    @JsonIgnore
+    @Column(name = "commission_version", nullable = false, updatable = false, columnDefinition = "BIGINT DEFAULT 0")
+    private long commissionVersion;
+
+    @PrePersist
+    void assignIdIfMissing() {
+        if (uId == null) {
+            uId = UUID.randomUUID().toString();
+        }
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+
     // Getters and Setters
     public String getUId() {
         return uId;
     }
 
+    public void setUId(String uId) {
+        this.uId = uId;
+    }
+
+    @Override
+    @JsonIgnore
+    public String getId() {
+        return uId;
+    }
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return !persisted;
+    }
+
     public String getFullName() {
         return fullName;
     }
@@ -92,11 +135,11 @@ public class User {
 
    
 
-    public BigDecimal getTotalSales() {
+    public Money getTotalSales() {
         return totalSales;
     }
 
-    public void setTotalSales(BigDecimal totalSales) {
+    public void setTotalSales(Money totalSales) {
         this.totalSales = totalSales;
     }
 
@@ -0,0 +1,40 @@
+package com.blockstars.blockstarsassignment.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import com.blockstars.blockstarsassignment.domain.Commission;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Commission response row. Carries the owning user's id instead of the whole User entity.
+ */
+@Data
+@AllArgsConstructor
+public class CommissionDto {
+    private Long commissionId;
+    private String userId;
+    private BigDecimal commissionAmount;
+    private LocalDateTime commissionDate;
+    private String commissionType;
+    private String description;
+    private String status;
+    private LocalDateTime paymentDate;
+    private String currency;
+    private String transactionReference;
+
+    /**
+     * Builds the response row for a commission whose user is already loaded.
+     *
+     * @param commission The commission entity.
+     * @return The response row.
+     */
+    public static CommissionDto from(Commission commission) {
+        return new CommissionDto(commission.getCommissionId(), commission.getUser().getUId(),
+                commission.getCommissionAmount().toBigDecimal(), commission.getCommissionDate(), commission.getCommissionType(),
+                commission.getDescription(), commission.getStatus(), commission.getPaymentDate(),
+                commission.getCurrency(), commission.getTransactionReference());
+    }
+}
@@ -0,0 +1,14 @@
+package com.blockstars.blockstarsassignment.dto;
+
+import java.math.BigDecimal;
+
+import lombok.Data;
+
+/**
+ * A sale (or refund, when negative) to add to a user's total sales.
+ */
+@Data
+public class SalesEventDto {
+    private String userId;
+    private BigDecimal amount;
+}
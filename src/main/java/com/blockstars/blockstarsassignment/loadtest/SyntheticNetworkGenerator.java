@@ -0,0 +1,235 @@
+package com.blockstars.blockstarsassignment.loadtest;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import com.blockstars.blockstarsassignment.BlockStarsAssignmentApplication;
+import com.blockstars.blockstarsassignment.constants.UserRole;
+
+/**
+ * Builds a synthetic referral forest for load testing and bulk-loads it with batched JDBC inserts.
+ * Only active with the {@code loadgen} profile, see application-loadgen.properties. Run it through
+ * {@link #main(String[])}, which activates the profile and exits once the network is loaded.
+ */
+@Component
+@Profile("loadgen")
+public class SyntheticNetworkGenerator implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(SyntheticNetworkGenerator.class);
+
+    // Commissions are calculated for referral levels 1 to 3
+    private static final int MAX_LEVEL = 3;
+
+    private static final String INSERT_USER = "INSERT INTO users (u_id, full_name, email, password, user_role, "
+            + "total_sales, created_by, created_ts, updated_by, updated_ts) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_REFERRAL = "INSERT INTO user_referrals (level, referrer_id, referred_id, "
+            + "referral_date, created_by, created_ts, updated_by, updated_ts) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String CREATED_BY = "loadgen";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PasswordEncoder passwordEncoder;
+
+    // Part of every generated email, so repeated runs against the same database do not collide
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    @Value("${loadgen.users:1000000}")
+    private int totalUsers;
+
+    @Value("${loadgen.roots:100}")
+    private int roots;
+
+    @Value("${loadgen.breadth:4}")
+    private int breadth;
+
+    @Value("${loadgen.depth:12}")
+    private int depth;
+
+    @Value("${loadgen.skew:1.5}")
+    private double skew;
+
+    @Value("${loadgen.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${loadgen.seed:42}")
+    private long seed;
+
+    @Value("${loadgen.sample-file:target/loadtest-users.csv}")
+    private String sampleFile;
+
+    @Value("${loadgen.sample-size:10000}")
+    private int sampleSize;
+
+    /**
+     * Loads the network and exits, pooled executor threads would otherwise keep the JVM alive until they time out.
+     */
+    public static void main(String[] args) {
+        SpringApplication application = new SpringApplication(BlockStarsAssignmentApplication.class);
+        application.setAdditionalProfiles("loadgen");
+        System.exit(SpringApplication.exit(application.run(args)));
+    }
+
+    public SyntheticNetworkGenerator(JdbcTemplate jdbcTemplate, PasswordEncoder passwordEncoder) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.passwordEncoder = passwordEncoder;
+    }
+
+    @Override
+    public void run(String... args) throws IOException {
+        log.info("Generating {} users in {} trees (breadth: {}, depth: {}, skew: {}, run: {})",
+                totalUsers, roots, breadth, depth, skew, runId);
+        long start = System.nanoTime();
+
+        Random random = new Random(seed);
+        // One hash for every generated user, BCrypt per row would dominate the load time
+        String password = passwordEncoder.encode("password");
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        List<Object[]> users = new ArrayList<>(batchSize);
+        List<Object[]> referrals = new ArrayList<>(batchSize * MAX_LEVEL);
+        List<String[]> sample = new ArrayList<>(sampleSize);
+        Deque<Node> frontier = new ArrayDeque<>();
+
+        int created = 0;
+        long referralCount = 0;
+        for (int r = 0; r < roots && created < totalUsers; r++) {
+            // Cumulative target, so a tree that ends short (depth limit) hands its deficit to the next tree
+            int treeLimit = (int) ((long) totalUsers * (r + 1) / roots);
+            frontier.add(new Node(UUID.randomUUID().toString(), new String[0], 0));
+            while (!frontier.isEmpty() && created < treeLimit) {
+                Node node = frontier.poll();
+                String email = "user" + created + "." + runId + "@loadtest.local";
+                users.add(new Object[] { node.id, "Load Test User " + created, email, password, UserRole.USER.name(),
+                        randomSales(random), CREATED_BY, now, CREATED_BY, now });
+                for (int level = 1; level <= node.ancestors.length; level++) {
+                    referrals.add(new Object[] { level, node.ancestors[level - 1], node.id, now, CREATED_BY, now,
+                            CREATED_BY, now });
+                }
+                referralCount += node.ancestors.length;
+                created++;
+                sample(sample, random, created, node.id, email);
+
+                if (node.depth < depth) {
+                    String[] ancestors = childAncestors(node);
+                    int children = childCount(random);
+                    // Keep the tree alive until it reaches its size, skew alone would end many trees at the root
+                    if (children == 0 && frontier.isEmpty() && created < treeLimit) {
+                        children = 1;
+                    }
+                    children = Math.min(children, treeLimit - created - frontier.size());
+                    for (int c = 0; c < children; c++) {
+                        frontier.add(new Node(UUID.randomUUID().toString(), ancestors, node.depth + 1));
+                    }
+                }
+                if (users.size() >= batchSize) {
+                    flush(users, referrals);
+                    log.info("Inserted {} users", created);
+                }
+            }
+            frontier.clear();
+        }
+        flush(users, referrals);
+        writeSample(sample);
+
+        log.info("Generated {} users and {} referrals in {} ms", created, referralCount,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Draws the number of children for a node as {@code breadth * (skew + 1) * u^skew}, which has mean
+     * {@code breadth} for uniform u. The fraction is rounded up with matching probability so the integer
+     * count keeps that mean. With skew 0 every node has exactly {@code breadth} children; higher values
+     * concentrate the children on fewer nodes.
+     */
+    private int childCount(Random random) {
+        double children = breadth * (skew + 1) * Math.pow(random.nextDouble(), skew);
+        int whole = (int) children;
+        return random.nextDouble() < children - whole ? whole + 1 : whole;
+    }
+
+    private static BigDecimal randomSales(Random random) {
+        return BigDecimal.valueOf(random.nextInt(1_000_000), 2);
+    }
+
+    private static String[] childAncestors(Node node) {
+        int length = Math.min(node.ancestors.length + 1, MAX_LEVEL);
+        String[] ancestors = new String[length];
+        ancestors[0] = node.id;
+        System.arraycopy(node.ancestors, 0, ancestors, 1, length - 1);
+        return ancestors;
+    }
+
+    // Reservoir sample of generated users, used by the k6 scenarios for refer and commission requests
+    private void sample(List<String[]> sample, Random random, int seen, String id, String email) {
+        if (sample.size() < sampleSize) {
+            sample.add(new String[] { id, email });
+        } else {
+            int slot = random.nextInt(seen);
+            if (slot < sampleSize) {
+                sample.set(slot, new String[] { id, email });
+            }
+        }
+    }
+
+    private void flush(List<Object[]> users, List<Object[]> referrals) {
+        if (!users.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_USER, users);
+            users.clear();
+        }
+        // Referrals reference users of this or earlier batches only, so the foreign keys are satisfied
+        if (!referrals.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_REFERRAL, referrals);
+            referrals.clear();
+        }
+    }
+
+    private void writeSample(List<String[]> sample) throws IOException {
+        Path path = Paths.get(sampleFile);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(path))) {
+            writer.println("userId,email");
+            for (String[] row : sample) {
+                writer.println(row[0] + "," + row[1]);
+            }
+        }
+        log.info("Wrote {} sample users to {}", sample.size(), path.toAbsolutePath());
+    }
+
+    private static final class Node {
+        private final String id;
+        // Nearest ancestor first: index 0 is the level 1 referrer
+        private final String[] ancestors;
+        private final int depth;
+
+        private Node(String id, String[] ancestors, int depth) {
+            this.id = id;
+            this.ancestors = ancestors;
+            this.depth = depth;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.blockstars.blockstarsassignment.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.blockstars.CommissionLevel")
+@Label("Commission Level")
+@Description("Commission calculation for one referral level of a user")
+@Category({ "BlockStars", "UserService" })
+@StackTrace(false)
+public class CommissionLevelEvent extends Event {
+
+    @Label("User Id")
+    public String userId;
+
+    @Label("Level")
+    public int level;
+
+    @Label("Referral Count")
+    public int referralCount;
+
+    @Label("Successful")
+    public boolean success;
+}
@@ -0,0 +1,30 @@
+package com.blockstars.blockstarsassignment.monitoring;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Admin endpoint at /actuator/jfr that dumps the continuous flight recording on demand.
+ */
+@Component
+@ConditionalOnProperty(name = "monitoring.jfr.enabled", havingValue = "true")
+@Endpoint(id = "jfr")
+public class FlightRecorderEndpoint {
+
+    private final FlightRecorderService flightRecorderService;
+
+    public FlightRecorderEndpoint(FlightRecorderService flightRecorderService) {
+        this.flightRecorderService = flightRecorderService;
+    }
+
+    @WriteOperation
+    public Map<String, String> dump() throws IOException {
+        return Collections.singletonMap("file", flightRecorderService.dump().toString());
+    }
+}
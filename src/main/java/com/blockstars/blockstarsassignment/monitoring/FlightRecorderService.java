@@ -0,0 +1,86 @@
+package com.blockstars.blockstarsassignment.monitoring;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Keeps an always-on Flight Recorder recording with the low-overhead "default" settings plus the
+ * UserService events. Chunks are rotated on disk by max age and size, and can be dumped on demand.
+ */
+@Service
+@ConditionalOnProperty(name = "monitoring.jfr.enabled", havingValue = "true")
+public class FlightRecorderService {
+
+    private static final Logger log = LoggerFactory.getLogger(FlightRecorderService.class);
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    @Value("${monitoring.jfr.max-age:6h}")
+    private Duration maxAge;
+
+    @Value("${monitoring.jfr.max-size:256MB}")
+    private DataSize maxSize;
+
+    @Value("${monitoring.jfr.dump-directory:jfr}")
+    private String dumpDirectory;
+
+    private Recording recording;
+
+    @PostConstruct
+    public void start() throws IOException, ParseException {
+        recording = new Recording(Configuration.getConfiguration("default"));
+        recording.setName("blockstars-continuous");
+        recording.setToDisk(true);
+        recording.setMaxAge(maxAge);
+        recording.setMaxSize(maxSize.toBytes());
+        recording.enable(RegisterUserEvent.class);
+        recording.enable(ReferUserEvent.class);
+        recording.enable(ViewCommissionsEvent.class);
+        recording.enable(CommissionLevelEvent.class);
+        recording.enable(PasswordEncodeEvent.class);
+        recording.start();
+        log.info("Continuous flight recording started (max age: {}, max size: {})", maxAge, maxSize);
+    }
+
+    /**
+     * Writes the data currently held by the continuous recording to a new file.
+     *
+     * @return Path of the dump file.
+     * @throws IOException if the dump cannot be written.
+     */
+    public Path dump() throws IOException {
+        Path directory = Paths.get(dumpDirectory);
+        Files.createDirectories(directory);
+        Path file = directory.resolve("blockstars-" + FILE_TIMESTAMP.format(LocalDateTime.now()) + ".jfr")
+                .toAbsolutePath();
+        recording.dump(file);
+        log.info("Flight recording dumped to {}", file);
+        return file;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.blockstars.blockstarsassignment.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.blockstars.PasswordEncode")
+@Label("Password Encode")
+@Description("BCrypt hashing of a password during registration")
+@Category({ "BlockStars", "UserService" })
+@StackTrace(false)
+public class PasswordEncodeEvent extends Event {
+
+    @Label("Successful")
+    public boolean success;
+}
@@ -0,0 +1,28 @@
+package com.blockstars.blockstarsassignment.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.blockstars.ReferUser")
+@Label("Refer User")
+@Description("UserService.referUser")
+@Category({ "BlockStars", "UserService" })
+@StackTrace(false)
+public class ReferUserEvent extends Event {
+
+    @Label("Referrer Id")
+    public String referrerId;
+
+    @Label("Referred User Id")
+    public String referredUserId;
+
+    @Label("Level")
+    public int level;
+
+    @Label("Successful")
+    public boolean success;
+}
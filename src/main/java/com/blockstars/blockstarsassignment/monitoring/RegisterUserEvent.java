@@ -0,0 +1,22 @@
+package com.blockstars.blockstarsassignment.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.blockstars.RegisterUser")
+@Label("Register User")
+@Description("UserService.registerUser, including validation and password hashing")
+@Category({ "BlockStars", "UserService" })
+@StackTrace(false)
+public class RegisterUserEvent extends Event {
+
+    @Label("User Id")
+    public String userId;
+
+    @Label("Successful")
+    public boolean success;
+}
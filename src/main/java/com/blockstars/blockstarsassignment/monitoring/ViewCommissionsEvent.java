@@ -0,0 +1,25 @@
+package com.blockstars.blockstarsassignment.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.blockstars.ViewCommissions")
+@Label("View Commissions")
+@Description("UserService.viewCommissions, covering all referral levels")
+@Category({ "BlockStars", "UserService" })
+@StackTrace(false)
+public class ViewCommissionsEvent extends Event {
+
+    @Label("User Id")
+    public String userId;
+
+    @Label("Commission Count")
+    public int commissionCount;
+
+    @Label("Successful")
+    public boolean success;
+}
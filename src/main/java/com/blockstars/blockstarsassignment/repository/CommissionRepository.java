@@ -1,11 +1,34 @@
 package com.blockstars.blockstarsassignment.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.data.repository.query.Param;
 
 import com.blockstars.blockstarsassignment.domain.Commission;
 
 @EnableJpaRepositories
 public interface CommissionRepository extends JpaRepository<Commission,Long> {
 
+	// Both archive queries are bounded by commission_date so only partitions older than the cutoff are scanned
+
+	@Modifying
+	@Query(value = "INSERT INTO commissions_archive (commission_id, user_id, commission_amount, commission_date, "
+			+ "commission_type, description, status, payment_date, currency, transaction_reference) "
+			+ "SELECT commission_id, user_id, commission_amount, commission_date, commission_type, description, "
+			+ "status, payment_date, currency, transaction_reference FROM commissions "
+			+ "WHERE commission_date < :cutoff AND (payment_date IS NOT NULL OR status IN (:statuses))",
+			nativeQuery = true)
+	int copySettledToArchive(@Param("cutoff") LocalDateTime cutoff, @Param("statuses") Collection<String> statuses);
+
+	@Modifying
+	@Query(value = "DELETE FROM commissions "
+			+ "WHERE commission_date < :cutoff AND (payment_date IS NOT NULL OR status IN (:statuses))",
+			nativeQuery = true)
+	int deleteSettledBefore(@Param("cutoff") LocalDateTime cutoff, @Param("statuses") Collection<String> statuses);
+
 }
@@ -2,7 +2,11 @@ package com.blockstars.blockstarsassignment.repository;
 
 import java.util.List;
 
+import javax.persistence.QueryHint;
+
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
 import com.blockstars.blockstarsassignment.domain.Referral;
@@ -11,6 +15,9 @@ import com.blockstars.blockstarsassignment.domain.User;
 @EnableJpaRepositories
 public interface ReferralRepository extends JpaRepository<Referral,Long> {
 
+	@EntityGraph(attributePaths = "referred")
+	@QueryHints({ @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+			@QueryHint(name = "org.hibernate.cacheRegion", value = "referral-queries") })
 	List<Referral> findAllByReferrerAndLevel(User user, int level);
 
 }
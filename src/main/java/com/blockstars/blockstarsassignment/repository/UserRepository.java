@@ -14,6 +14,4 @@ public interface UserRepository extends JpaRepository<User,String> {
 
 	Optional<User> findByEmail(String referredEmail);
 
-	void deleteById(Long userId);
-
 }
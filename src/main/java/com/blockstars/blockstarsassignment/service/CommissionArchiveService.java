@@ -0,0 +1,235 @@
+package com.blockstars.blockstarsassignment.service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.blockstars.blockstarsassignment.repository.CommissionRepository;
+import com.blockstars.blockstarsassignment.sharding.ShardRouter;
+
+/**
+ * Keeps the commissions table range-partitioned by month on commission_date and moves settled
+ * commissions older than the retention period into the compressed commissions_archive table.
+ * Partition DDL is MariaDB specific, the service is disabled with commissions.archive.enabled=false.
+ * All maintenance runs under a database lock, so with several instances only one of them performs it,
+ * and is repeated for every shard when sharding is enabled.
+ */
+@Service
+@ConditionalOnProperty(name = "commissions.archive.enabled", havingValue = "true")
+public class CommissionArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(CommissionArchiveService.class);
+
+    private static final String TABLE = "commissions";
+    private static final String HISTORY_PARTITION = "p_history";
+    private static final String FUTURE_PARTITION = "p_future";
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    private static final String MAINTENANCE_LOCK = "commissions_partition_maintenance";
+
+    private static final String CREATE_ARCHIVE_TABLE = "CREATE TABLE IF NOT EXISTS commissions_archive ("
+            + "commission_id BIGINT NOT NULL PRIMARY KEY, "
+            + "user_id VARCHAR(255), "
+            + "commission_amount DECIMAL(19,2), "
+            + "commission_date DATETIME NOT NULL, "
+            + "commission_type VARCHAR(255), "
+            + "description VARCHAR(255), "
+            + "status VARCHAR(255), "
+            + "payment_date DATETIME, "
+            + "currency VARCHAR(255), "
+            + "transaction_reference VARCHAR(255), "
+            + "KEY idx_commissions_archive_user (user_id, commission_date)"
+            + ") ENGINE=InnoDB ROW_FORMAT=COMPRESSED";
+
+    private final CommissionRepository commissionRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+
+    @Value("${commissions.archive.retention-months:6}")
+    private int retentionMonths;
+
+    @Value("${commissions.archive.partitions-ahead:3}")
+    private int partitionsAhead;
+
+    @Value("${commissions.archive.settled-statuses:PAID,SETTLED}")
+    private Set<String> settledStatuses;
+
+    public CommissionArchiveService(CommissionRepository commissionRepository, JdbcTemplate jdbcTemplate,
+                                    TransactionTemplate transactionTemplate, ShardRouter shardRouter) {
+        this.commissionRepository = commissionRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.shardRouter = shardRouter;
+    }
+
+    /**
+     * Partitions the commissions table on first start and creates the archive table.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        shardRouter.forEachShard(() -> withMaintenanceLock(session -> {
+            session.execute(CREATE_ARCHIVE_TABLE);
+            if (getPartitions(session).isEmpty()) {
+                partitionTable(session);
+            }
+            addFuturePartitions(session);
+        }));
+    }
+
+    /**
+     * Archives settled commissions older than the retention period and drops the emptied partitions.
+     */
+    @Scheduled(cron = "${commissions.archive.cron:0 0 3 * * *}")
+    public void archive() {
+        shardRouter.forEachShard(() -> withMaintenanceLock(session -> {
+            addFuturePartitions(session);
+
+            LocalDate cutoff = YearMonth.now().minusMonths(retentionMonths).atDay(1);
+            log.info("Archiving settled commissions before {}", cutoff);
+
+            Integer moved = transactionTemplate.execute(status -> {
+                int copied = commissionRepository.copySettledToArchive(cutoff.atStartOfDay(), settledStatuses);
+                int deleted = commissionRepository.deleteSettledBefore(cutoff.atStartOfDay(), settledStatuses);
+                if (copied != deleted) {
+                    throw new IllegalStateException("Archived " + copied + " commissions but deleted " + deleted);
+                }
+                return deleted;
+            });
+            log.info("Archived {} commissions", moved);
+
+            dropEmptyPartitionsBefore(session, cutoff);
+        }));
+    }
+
+    /**
+     * Runs the action while a named MariaDB lock is held by a dedicated connection, which the action receives
+     * for its DDL. The archive statements run in their own transaction on another pooled connection; the lock
+     * only serializes instances and does not need to cover them. Does nothing if another instance holds the
+     * lock, that instance is doing the same maintenance.
+     */
+    private void withMaintenanceLock(Consumer<JdbcTemplate> action) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            JdbcTemplate session = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            Integer locked = session.queryForObject("SELECT GET_LOCK(?, 0)", Integer.class, MAINTENANCE_LOCK);
+            if (locked == null || locked != 1) {
+                log.info("Commission partition maintenance is running on another instance, skipped");
+                return null;
+            }
+            try {
+                action.accept(session);
+            } finally {
+                session.queryForObject("SELECT RELEASE_LOCK(?)", Integer.class, MAINTENANCE_LOCK);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @return Monthly partitions of the commissions table keyed by their exclusive upper bound,
+     *         empty if the table is not partitioned.
+     */
+    TreeMap<LocalDate, String> getPartitions(JdbcTemplate session) {
+        TreeMap<LocalDate, String> partitions = new TreeMap<>();
+        List<Map<String, Object>> rows = session.queryForList(
+                "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS "
+                        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL", TABLE);
+        for (Map<String, Object> row : rows) {
+            String name = (String) row.get("PARTITION_NAME");
+            if (!FUTURE_PARTITION.equals(name)) {
+                // RANGE COLUMNS bounds are reported as quoted literals, e.g. '2026-11-01'
+                String bound = ((String) row.get("PARTITION_DESCRIPTION")).replace("'", "");
+                partitions.put(LocalDate.parse(bound.substring(0, 10)), name);
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * Partitions the table with every monthly partition from the oldest commission up to partitions-ahead
+     * months in a single ALTER, so the existing rows are copied once.
+     */
+    private void partitionTable(JdbcTemplate session) {
+        LocalDate oldest = session.queryForObject(
+                "SELECT CAST(MIN(commission_date) AS DATE) FROM " + TABLE, LocalDate.class);
+        YearMonth first = oldest == null ? YearMonth.now() : YearMonth.from(oldest);
+        YearMonth last = YearMonth.now().plusMonths(partitionsAhead);
+        log.info("Partitioning {} by month from {} to {}", TABLE, first, last);
+
+        // Foreign keys and a primary key without the partition column are not allowed on partitioned tables
+        List<String> foreignKeys = session.queryForList(
+                "SELECT CONSTRAINT_NAME FROM information_schema.REFERENTIAL_CONSTRAINTS "
+                        + "WHERE CONSTRAINT_SCHEMA = DATABASE() AND TABLE_NAME = ?", String.class, TABLE);
+        for (String foreignKey : foreignKeys) {
+            session.execute("ALTER TABLE " + TABLE + " DROP FOREIGN KEY " + foreignKey);
+        }
+
+        StringBuilder ddl = new StringBuilder("ALTER TABLE ").append(TABLE)
+                .append(" MODIFY commission_date DATETIME NOT NULL, ")
+                .append("DROP PRIMARY KEY, ADD PRIMARY KEY (commission_id, commission_date), ")
+                .append("ADD KEY idx_commissions_user_date (user_id, commission_date) ")
+                .append("PARTITION BY RANGE COLUMNS (commission_date) (")
+                .append("PARTITION ").append(HISTORY_PARTITION)
+                .append(" VALUES LESS THAN ('").append(first.atDay(1)).append("'), ");
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            ddl.append("PARTITION ").append(PARTITION_NAME.format(month.atDay(1)))
+                    .append(" VALUES LESS THAN ('").append(month.plusMonths(1).atDay(1)).append("'), ");
+        }
+        ddl.append("PARTITION ").append(FUTURE_PARTITION).append(" VALUES LESS THAN (MAXVALUE))");
+        session.execute(ddl.toString());
+    }
+
+    /**
+     * Splits monthly partitions off p_future up to partitions-ahead months after the current month.
+     * Since the table is created with partitions ahead, p_future holds no rows when it is split and
+     * the reorganization only changes metadata.
+     */
+    void addFuturePartitions(JdbcTemplate session) {
+        LocalDate lastBound = getPartitions(session).lastKey();
+        LocalDate target = YearMonth.now().plusMonths(partitionsAhead + 1L).atDay(1);
+
+        for (LocalDate lower = lastBound; lower.isBefore(target); lower = lower.plusMonths(1)) {
+            LocalDate upper = lower.plusMonths(1);
+            session.execute("ALTER TABLE " + TABLE + " REORGANIZE PARTITION " + FUTURE_PARTITION + " INTO ("
+                    + "PARTITION " + PARTITION_NAME.format(lower) + " VALUES LESS THAN ('" + upper + "'), "
+                    + "PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN (MAXVALUE))");
+            log.info("Added partition {} for {}", PARTITION_NAME.format(lower), YearMonth.from(lower));
+        }
+    }
+
+    /**
+     * Drops empty monthly partitions whose upper bound is on or before the cutoff, i.e. that only hold
+     * commissions older than the cutoff. p_history is kept as the lowest partition.
+     */
+    void dropEmptyPartitionsBefore(JdbcTemplate session, LocalDate cutoff) {
+        for (Map.Entry<LocalDate, String> partition : getPartitions(session).entrySet()) {
+            String name = partition.getValue();
+            if (HISTORY_PARTITION.equals(name) || partition.getKey().isAfter(cutoff)) {
+                continue;
+            }
+            Long rows = session.queryForObject(
+                    "SELECT COUNT(*) FROM " + TABLE + " PARTITION (" + name + ")", Long.class);
+            if (rows != null && rows == 0L) {
+                session.execute("ALTER TABLE " + TABLE + " DROP PARTITION " + name);
+                log.info("Dropped empty partition {}", name);
+            }
+        }
+    }
+}
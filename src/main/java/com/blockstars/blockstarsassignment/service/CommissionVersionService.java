@@ -0,0 +1,100 @@
+package com.blockstars.blockstarsassignment.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.blockstars.blockstarsassignment.sharding.ShardRouter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Tracks a version per user in users.commission_version that changes whenever the user's commissions
+ * may have changed, i.e. on new referrals and on sales changes in the downline. The version is bumped
+ * in the transaction that makes the change and exposed as a weak ETag for conditional commission reads.
+ * Versions are cached locally for a short time, so another instance sees a change at most one TTL late.
+ */
+@Service
+public class CommissionVersionService {
+
+    private static final String SELECT_VERSION = "SELECT commission_version FROM users WHERE u_id = ?";
+
+    private static final String BUMP_VERSIONS =
+            "UPDATE users SET commission_version = commission_version + 1 WHERE u_id IN (:userIds)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final ShardRouter shardRouter;
+
+    private final Cache<String, Long> versions;
+
+    public CommissionVersionService(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                                    ShardRouter shardRouter,
+                                    @Value("${commissions.etag.max-users:100000}") long maxUsers,
+                                    @Value("${commissions.etag.ttl-ms:1000}") long ttlMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.shardRouter = shardRouter;
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .build();
+    }
+
+    /**
+     * @param userId ID of the user.
+     * @return Weak ETag for the current version of the user's commissions, empty if the user does not exist.
+     */
+    public Optional<String> getETag(String userId) {
+        Long version = versions.get(userId, this::loadVersion);
+        return Optional.ofNullable(version).map(v -> "W/\"" + v + "\"");
+    }
+
+    /**
+     * Bumps the versions of the given users in the current transaction. The local copies are dropped
+     * once the transaction commits, so a concurrent read cannot cache the old version afterwards.
+     *
+     * @param userIds IDs of the users whose commissions changed.
+     */
+    public void bump(Collection<String> userIds) {
+        bump(namedParameterJdbcTemplate, userIds);
+    }
+
+    /**
+     * Bumps the versions of the given users through the given template, e.g. the pool of another shard
+     * whose users have referred users of the current shard.
+     *
+     * @param shardJdbc Template of the shard holding the users.
+     * @param userIds   IDs of the users whose commissions changed.
+     */
+    public void bump(NamedParameterJdbcTemplate shardJdbc, Collection<String> userIds) {
+        List<String> ids = new ArrayList<>(userIds);
+        InClause.forEachChunk(ids, chunk -> shardJdbc.update(BUMP_VERSIONS, new MapSqlParameterSource("userIds", chunk)));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    versions.invalidateAll(ids);
+                }
+            });
+        } else {
+            versions.invalidateAll(ids);
+        }
+    }
+
+    private Long loadVersion(String userId) {
+        List<Long> found = shardRouter.onShardOf(userId,
+                () -> jdbcTemplate.queryForList(SELECT_VERSION, Long.class, userId));
+        return found.isEmpty() ? null : found.get(0);
+    }
+}
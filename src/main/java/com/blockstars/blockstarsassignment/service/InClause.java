@@ -0,0 +1,21 @@
+package com.blockstars.blockstarsassignment.service;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Splits value lists bound to IN (:values) parameters into chunks well below the database placeholder limits.
+ */
+final class InClause {
+
+    static final int MAX_SIZE = 1000;
+
+    private InClause() {
+    }
+
+    static <T> void forEachChunk(List<T> values, Consumer<List<T>> action) {
+        for (int from = 0; from < values.size(); from += MAX_SIZE) {
+            action.accept(values.subList(from, Math.min(from + MAX_SIZE, values.size())));
+        }
+    }
+}
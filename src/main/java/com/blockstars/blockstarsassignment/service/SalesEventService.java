@@ -0,0 +1,295 @@
+package com.blockstars.blockstarsassignment.service;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.blockstars.blockstarsassignment.domain.Money;
+import com.blockstars.blockstarsassignment.domain.User;
+import com.blockstars.blockstarsassignment.dto.SalesEventDto;
+import com.blockstars.blockstarsassignment.sharding.ShardContext;
+import com.blockstars.blockstarsassignment.sharding.ShardRouter;
+
+/**
+ * Ingests sales events. Events are coalesced per user in memory and flushed periodically as
+ * atomic total_sales increments in JDBC batches, after which the uplines of the affected users
+ * get a new commission version. The in-memory window is capped; a window that keeps failing is
+ * applied user by user so that a single bad delta cannot hold back all other sales.
+ */
+@Service
+public class SalesEventService {
+
+    private static final Logger log = LoggerFactory.getLogger(SalesEventService.class);
+
+    private static final String INCREMENT_SALES = "UPDATE users SET total_sales = COALESCE(total_sales, 0) + ?, "
+            + "updated_ts = ? WHERE u_id = ?";
+
+    private static final String SELECT_UPLINES = "SELECT DISTINCT referrer_id FROM user_referrals "
+            + "WHERE referred_id IN (:userIds)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final CommissionVersionService commissionVersionService;
+    private final ShardRouter shardRouter;
+
+    // Pending sales deltas in cents per user id, guarded by this
+    private Map<String, Long> pending = new HashMap<>();
+
+    // Window whose last flush failed and the number of failed attempts, guarded by this
+    private Map<String, Long> retryWindow;
+    private int retryAttempts;
+
+    @Value("${sales.ingest.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${sales.ingest.max-pending-users:100000}")
+    private int maxPendingUsers;
+
+    @Value("${sales.ingest.max-retries:3}")
+    private int maxRetries;
+
+    public SalesEventService(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                             TransactionTemplate transactionTemplate, EntityManagerFactory entityManagerFactory,
+                             CommissionVersionService commissionVersionService, ShardRouter shardRouter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+        this.commissionVersionService = commissionVersionService;
+        this.shardRouter = shardRouter;
+    }
+
+    /**
+     * Adds sales events to the current batch window. Either all events of the call are accepted or none.
+     *
+     * @param events The sales events.
+     * @return Number of events accepted.
+     * @throws IllegalArgumentException if an event has no user id or amount, or an amount is out of range.
+     * @throws IllegalStateException    if the window is full, the caller should retry later.
+     */
+    public int ingest(List<SalesEventDto> events) {
+        // Coalesce outside the lock so concurrent requests only contend on the merge of their totals
+        Map<String, Long> deltas = new HashMap<>();
+        try {
+            for (SalesEventDto event : events) {
+                if (event.getUserId() == null || event.getAmount() == null) {
+                    log.error("Invalid sales event: {}", event);
+                    throw new IllegalArgumentException("Sales event requires userId and amount");
+                }
+                deltas.merge(event.getUserId(), Money.of(event.getAmount()).getMinorUnits(), Math::addExact);
+            }
+        } catch (ArithmeticException e) {
+            log.error("Sales amount out of range: {}", e.getMessage());
+            throw new IllegalArgumentException("Sales amount out of range");
+        }
+
+        synchronized (this) {
+            // Compute every merged total before touching the window, so a failure leaves nothing applied
+            Map<String, Long> merged = new HashMap<>(deltas.size());
+            int newUsers = 0;
+            for (Map.Entry<String, Long> delta : deltas.entrySet()) {
+                Long current = pending.get(delta.getKey());
+                if (current == null) {
+                    newUsers++;
+                    merged.put(delta.getKey(), delta.getValue());
+                } else {
+                    try {
+                        merged.put(delta.getKey(), Math.addExact(current, delta.getValue()));
+                    } catch (ArithmeticException e) {
+                        log.error("Pending sales overflow for user: {}", delta.getKey());
+                        throw new IllegalArgumentException("Sales amount out of range");
+                    }
+                }
+            }
+            if (pending.size() + newUsers > maxPendingUsers) {
+                log.warn("Sales window full ({} users pending), rejecting {} events", pending.size(), events.size());
+                throw new IllegalStateException("Too many pending sales, retry later");
+            }
+            pending.putAll(merged);
+        }
+        log.debug("Accepted {} sales events for {} users", events.size(), deltas.size());
+        return events.size();
+    }
+
+    /**
+     * Applies the pending deltas of the current batch window. A failed window is retried as a whole
+     * up to max-retries times while new events keep collecting, then applied user by user.
+     */
+    @Scheduled(fixedDelayString = "${sales.ingest.flush-interval-ms:200}")
+    public void flush() {
+        Map<String, Long> window;
+        int attempts;
+        synchronized (this) {
+            if (retryWindow != null) {
+                window = retryWindow;
+                attempts = retryAttempts;
+                retryWindow = null;
+            } else if (!pending.isEmpty()) {
+                window = pending;
+                attempts = 0;
+                pending = new HashMap<>();
+            } else {
+                return;
+            }
+        }
+
+        if (attempts >= maxRetries) {
+            applyPerUser(window);
+            return;
+        }
+        try {
+            applyWindow(window);
+        } catch (RuntimeException e) {
+            // Nothing was committed, retry the same window in the next flush
+            synchronized (this) {
+                retryWindow = window;
+                retryAttempts = attempts + 1;
+            }
+            log.error("Failed to apply sales for {} users (attempt {} of {})", window.size(), attempts + 1,
+                    maxRetries, e);
+        }
+    }
+
+    /**
+     * Drains the retry window and the pending window before shutdown.
+     */
+    @PreDestroy
+    public void shutdown() {
+        // Each flush handles one window, a failing retry window ends up applied user by user
+        for (int i = 0; i <= maxRetries + 1; i++) {
+            synchronized (this) {
+                if (retryWindow == null && pending.isEmpty()) {
+                    return;
+                }
+            }
+            flush();
+        }
+    }
+
+    private void applyPerUser(Map<String, Long> window) {
+        log.warn("Applying sales for {} users one by one after {} failed attempts", window.size(), maxRetries);
+        window.forEach((userId, cents) -> {
+            try {
+                applyWindow(new HashMap<>(Collections.singletonMap(userId, cents)));
+            } catch (RuntimeException e) {
+                log.error("Dropping sales delta {} for user {}", Money.ofMinor(cents), userId, e);
+            }
+        });
+    }
+
+    /**
+     * Applies the deltas shard by shard, each shard in its own transaction. Shards that committed are
+     * removed from the window, so a retry of the window does not apply them twice.
+     */
+    private void applyWindow(Map<String, Long> deltas) {
+        if (!shardRouter.isEnabled()) {
+            applyOnShard(deltas);
+            return;
+        }
+        RuntimeException failure = null;
+        for (Map.Entry<Integer, Map<String, Long>> shard : shardRouter.groupByShard(deltas).entrySet()) {
+            try {
+                ShardContext.call(shard.getKey(), () -> {
+                    applyOnShard(shard.getValue());
+                    return null;
+                });
+                // Committed, must not be applied again by a retry of this window
+                deltas.keySet().removeAll(shard.getValue().keySet());
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Applies the deltas and bumps the uplines' versions in one transaction, then evicts the updated users.
+     */
+    private void applyOnShard(Map<String, Long> deltas) {
+        List<String> userIds = new ArrayList<>(deltas.keySet());
+        List<String> uplines = transactionTemplate.execute(status -> {
+            applyDeltas(deltas);
+            List<String> affected = findUplines(namedParameterJdbcTemplate, userIds);
+            commissionVersionService.bump(affected);
+            return affected;
+        });
+        if (shardRouter.isEnabled()) {
+            bumpRemoteUplines(userIds);
+        }
+
+        // The updates bypass Hibernate, so drop the affected users from the second-level cache
+        Cache cache = entityManagerFactory.getCache();
+        userIds.forEach(userId -> cache.evict(User.class, userId));
+
+        log.info("Applied sales for {} users, {} uplines affected", userIds.size(), uplines.size());
+    }
+
+    private void applyDeltas(Map<String, Long> deltas) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> batch = new ArrayList<>(deltas.size());
+        deltas.forEach((userId, cents) -> batch.add(new Object[] { Money.ofMinor(cents).toBigDecimal(), now, userId }));
+
+        int[][] counts = jdbcTemplate.batchUpdate(INCREMENT_SALES, batch, batchSize,
+                (ps, row) -> {
+                    ps.setBigDecimal(1, (BigDecimal) row[0]);
+                    ps.setTimestamp(2, (Timestamp) row[1]);
+                    ps.setString(3, (String) row[2]);
+                });
+        for (int i = 0, row = 0; i < counts.length; i++) {
+            for (int j = 0; j < counts[i].length; j++, row++) {
+                if (counts[i][j] == 0) {
+                    log.warn("Sales event for unknown user ignored: {}", batch.get(row)[2]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Bumps the uplines stored on other shards, their referral rows live with them. Runs after the sales
+     * committed, so a failure is only logged: those uplines keep their ETag until their next change.
+     */
+    private void bumpRemoteUplines(List<String> userIds) {
+        for (int shard : shardRouter.otherShards()) {
+            try {
+                shardRouter.onShardPool(shard, shardJdbc -> {
+                    commissionVersionService.bump(shardJdbc, findUplines(shardJdbc, userIds));
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                log.error("Failed to bump commission versions of uplines on shard {}", shard, e);
+            }
+        }
+    }
+
+    private List<String> findUplines(NamedParameterJdbcTemplate shardJdbc, List<String> userIds) {
+        Set<String> uplines = new LinkedHashSet<>();
+        InClause.forEachChunk(userIds, chunk -> uplines.addAll(shardJdbc.queryForList(SELECT_UPLINES,
+                new MapSqlParameterSource("userIds", chunk), String.class)));
+        return new ArrayList<>(uplines);
+    }
+}
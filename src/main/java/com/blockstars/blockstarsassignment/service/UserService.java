@@ -3,60 +3,106 @@ package com.blockstars.blockstarsassignment.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.blockstars.blockstarsassignment.constants.UserRole;
 import com.blockstars.blockstarsassignment.domain.Commission;
+import com.blockstars.blockstarsassignment.domain.Money;
 import com.blockstars.blockstarsassignment.domain.Referral;
 import com.blockstars.blockstarsassignment.domain.User;
+import com.blockstars.blockstarsassignment.dto.CommissionDto;
 import com.blockstars.blockstarsassignment.dto.UserDto;
+import com.blockstars.blockstarsassignment.monitoring.CommissionLevelEvent;
+import com.blockstars.blockstarsassignment.monitoring.PasswordEncodeEvent;
+import com.blockstars.blockstarsassignment.monitoring.ReferUserEvent;
+import com.blockstars.blockstarsassignment.monitoring.RegisterUserEvent;
+import com.blockstars.blockstarsassignment.monitoring.ViewCommissionsEvent;
 import com.blockstars.blockstarsassignment.repository.CommissionRepository;
 import com.blockstars.blockstarsassignment.repository.ReferralRepository;
 import com.blockstars.blockstarsassignment.repository.UserRepository;
+import com.blockstars.blockstarsassignment.sharding.ShardRouter;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
 
 @Service
 public class UserService {
 
     private static final Logger log = LoggerFactory.getLogger(UserService.class);
 
+    // Commission rates per referral level, in basis points (1000 = 10%)
+    private static final long LEVEL_1_RATE_BPS = 1000L;
+    private static final long LEVEL_2_RATE_BPS = 500L;
+    private static final long LEVEL_3_RATE_BPS = 300L;
+
+    private static final String SELECT_TOTAL_SALES = "SELECT u_id, total_sales FROM users WHERE u_id IN (:userIds)";
+
     private final UserRepository userRepository;
     private final ReferralRepository referralRepository;
     private final CommissionRepository commissionRepository;
     private final PasswordEncoder passwordEncoder;
+    private final CommissionVersionService commissionVersionService;
+    private final ShardRouter shardRouter;
 
     @Autowired
     public UserService(UserRepository userRepository, ReferralRepository referralRepository,
-                       CommissionRepository commissionRepository, PasswordEncoder passwordEncoder) {
+                       CommissionRepository commissionRepository, PasswordEncoder passwordEncoder,
+                       CommissionVersionService commissionVersionService, ShardRouter shardRouter) {
         this.userRepository = userRepository;
         this.referralRepository = referralRepository;
         this.commissionRepository = commissionRepository;
         this.passwordEncoder = passwordEncoder;
+        this.commissionVersionService = commissionVersionService;
+        this.shardRouter = shardRouter;
     }
 
     /**
-     * Registers a new user.
+     * Registers a new user with a generated ID.
      *
      * @param payload UserDto object containing user information.
      * @return The registered user.
      */
     @Transactional
     public User registerUser(UserDto payload) {
-        log.info("Registering user with email: {}", payload.getEmail());
-
-        validateUserRegistration(payload);
-
-        User user = createUser(payload);
-        user = userRepository.save(user);
+        return registerUser(UUID.randomUUID().toString(), payload);
+    }
 
-        log.info("User registered successfully: {}", user);
-        return user;
+    /**
+     * Registers a new user with an ID assigned by the caller, e.g. to route the insert to the user's shard.
+     *
+     * @param userId  ID of the new user.
+     * @param payload UserDto object containing user information.
+     * @return The registered user.
+     */
+    @Transactional
+    public User registerUser(String userId, UserDto payload) {
+        log.info("Registering user with email: {}", payload.getEmail());
+        RegisterUserEvent event = new RegisterUserEvent();
+        event.begin();
+        // Set up front, so a rejected registration is recorded with the id it was attempted with
+        event.userId = userId;
+        try {
+            validateUserRegistration(payload);
+
+            User user = createUser(userId, payload);
+            user = userRepository.save(user);
+
+            event.success = true;
+            log.info("User registered successfully: {}", user);
+            return user;
+        } finally {
+            event.commit();
+        }
     }
 
     /**
@@ -70,32 +116,79 @@ public class UserService {
     public void referUser(String referrerId, String referredEmail, int level) {
         log.info("Referring user with referrerId: {} to referredEmail: {} at level: {}", referrerId, referredEmail, level);
 
-        User referrer = getUserById(referrerId);
-        User referredUser = getUserByEmail(referredEmail);
-        saveReferral(referrer, referredUser, level);
+        ReferUserEvent event = new ReferUserEvent();
+        event.begin();
+        event.referrerId = referrerId;
+        event.level = level;
+        try {
+            User referrer = getUserById(referrerId);
+            User referredUser = getUserByEmail(referredEmail);
+            event.referredUserId = referredUser.getUId();
+            saveReferral(referrer, referredUser.getUId(), level);
+
+            event.success = true;
+            log.info("User referred successfully.");
+        } finally {
+            event.commit();
+        }
+    }
 
-        log.info("User referred successfully.");
+    /**
+     * Refers a user stored on another shard to a user of this shard. The referral is stored with the referrer,
+     * the referred user is known by the ID found in the user directory.
+     *
+     * @param referrerId     ID of the referrer user.
+     * @param referredUserId ID of the referred user.
+     * @param level          Referral level.
+     */
+    @Transactional
+    public void referRemoteUser(String referrerId, String referredUserId, int level) {
+        log.info("Referring remote user {} to referrerId: {} at level: {}", referredUserId, referrerId, level);
+
+        ReferUserEvent event = new ReferUserEvent();
+        event.begin();
+        event.referrerId = referrerId;
+        event.referredUserId = referredUserId;
+        event.level = level;
+        try {
+            saveReferral(getUserById(referrerId), referredUserId, level);
+
+            event.success = true;
+            log.info("User referred successfully.");
+        } finally {
+            event.commit();
+        }
     }
 
     /**
      * Retrieves commissions for a user.
      *
      * @param userId ID of the user.
-     * @return List of commissions.
+     * @return List of commission response rows.
      */
     @Transactional
-    public List<Commission> viewCommissions(String userId) {
+    public List<CommissionDto> viewCommissions(String userId) {
         log.info("Viewing commissions for user with userId: {}", userId);
-
-        User user = getUserById(userId);
-        List<Commission> commissions = calculateCommissions(user);
-
-        for (Commission commission : commissions) {
-            commission.setCommissionDate(LocalDateTime.now());
-            commissionRepository.save(commission);
-            log.info("Commission saved successfully: {}", commission);
+        ViewCommissionsEvent event = new ViewCommissionsEvent();
+        event.begin();
+        event.userId = userId;
+        try {
+            User user = getUserById(userId);
+            List<Commission> commissions = calculateCommissions(user);
+            List<CommissionDto> response = new ArrayList<>(commissions.size());
+
+            for (Commission commission : commissions) {
+                commission.setCommissionDate(LocalDateTime.now());
+                commissionRepository.save(commission);
+                log.info("Commission saved successfully: {}", commission);
+                response.add(CommissionDto.from(commission));
+            }
+            event.commissionCount = response.size();
+            event.success = true;
+            return response;
+        } finally {
+            event.commit();
         }
-        return commissions;
     }
 
     /**
@@ -113,19 +206,27 @@ public class UserService {
     /**
      * Creates a new user object from the provided UserDto.
      *
+     * @param userId  ID of the new user.
      * @param payload UserDto object containing user information.
      * @return The created User object.
      */
-    private User createUser(UserDto payload) {
+    private User createUser(String userId, UserDto payload) {
         validateEmail(payload.getEmail()); // Validate email format
 
         User user = new User();
+        user.setUId(userId);
         user.setEmail(payload.getEmail());
         user.setFullName(payload.getFullName());
-        String hashedPassword = passwordEncoder.encode(payload.getPassword());
-        user.setPassword(hashedPassword);
+        PasswordEncodeEvent encodeEvent = new PasswordEncodeEvent();
+        encodeEvent.begin();
+        try {
+            user.setPassword(passwordEncoder.encode(payload.getPassword()));
+            encodeEvent.success = true;
+        } finally {
+            encodeEvent.commit();
+        }
         user.setRole(UserRole.USER);
-        user.setTotalSales(payload.getTotalSales());
+        user.setTotalSales(payload.getTotalSales() == null ? null : Money.of(payload.getTotalSales()));
         user.setCreatedTs(LocalDateTime.now());
         user.setUpdatedTs(LocalDateTime.now());
 
@@ -181,19 +282,20 @@ public class UserService {
     /**
      * Saves a referral in the database.
      *
-     * @param referrer      The referrer user.
-     * @param referredUser  The referred user.
-     * @param level         Referral level.
+     * @param referrer       The referrer user.
+     * @param referredUserId ID of the referred user.
+     * @param level          Referral level.
      */
-    private void saveReferral(User referrer, User referredUser, int level) {
+    private void saveReferral(User referrer, String referredUserId, int level) {
         Referral referral = new Referral();
         referral.setReferrer(referrer);
-        referral.setReferred(referredUser);
+        referral.setReferredId(referredUserId);
         referral.setLevel(level);
         referral.setReferralDate(LocalDateTime.now());
         referral.setCreatedTs(LocalDateTime.now());
         referral.setUpdatedTs(LocalDateTime.now());
         referralRepository.save(referral);
+        commissionVersionService.bump(Collections.singleton(referrer.getUId()));
 
         log.info("Referral saved successfully: {}", referral);
     }
@@ -207,13 +309,9 @@ public class UserService {
     private List<Commission> calculateCommissions(User user) {
         List<Commission> commissions = new ArrayList<>();
 
-        BigDecimal level1Rate = new BigDecimal("0.10");
-        BigDecimal level2Rate = new BigDecimal("0.05");
-        BigDecimal level3Rate = new BigDecimal("0.03");
-
-        calculateCommissionForLevel(user, 1, level1Rate, commissions);
-        calculateCommissionForLevel(user, 2, level2Rate, commissions);
-        calculateCommissionForLevel(user, 3, level3Rate, commissions);
+        calculateCommissionForLevel(user, 1, LEVEL_1_RATE_BPS, commissions);
+        calculateCommissionForLevel(user, 2, LEVEL_2_RATE_BPS, commissions);
+        calculateCommissionForLevel(user, 3, LEVEL_3_RATE_BPS, commissions);
 
         return commissions;
     }
@@ -223,24 +321,74 @@ public class UserService {
      *
      * @param user        The user for whom commissions are calculated.
      * @param level       Referral level.
-     * @param rate        Commission rate for the level.
+     * @param rateBps     Commission rate for the level, in basis points.
      * @param commissions List of commissions.
      */
-    private void calculateCommissionForLevel(User user, int level, BigDecimal rate, List<Commission> commissions) {
-        List<Referral> referrals = referralRepository.findAllByReferrerAndLevel(user, level);
+    private void calculateCommissionForLevel(User user, int level, long rateBps, List<Commission> commissions) {
+        CommissionLevelEvent event = new CommissionLevelEvent();
+        event.begin();
+        event.userId = user.getUId();
+        event.level = level;
+        try {
+            List<Referral> referrals = referralRepository.findAllByReferrerAndLevel(user, level);
+            event.referralCount = referrals.size();
+            Map<String, Money> remoteSales = findRemoteTotalSales(referrals);
+
+            for (Referral referral : referrals) {
+                if (referral != null) {
+                    String referredId = referral.getReferredId();
+                    Money totalSales;
+                    if (shardRouter.isLocal(referredId)) {
+                        totalSales = referral.getReferred().getTotalSales();
+                    } else if (remoteSales.containsKey(referredId)) {
+                        totalSales = remoteSales.get(referredId);
+                    } else {
+                        log.warn("Referred user {} not found on shard {}", referredId, shardRouter.shardOf(referredId));
+                        continue;
+                    }
+                    // Cents in, cents out: the only allocation is the resulting Money
+                    Money commissionAmount = Money.ofMinor(Money.multiplyByRate(totalSales.getMinorUnits(), rateBps));
+
+                    Commission commission = new Commission();
+                    commission.setUser(user);
+                    commission.setCommissionAmount(commissionAmount);
+
+                    commissions.add(commission);
+                    log.debug("Commission calculated for user: {} - Amount: {}", user, commissionAmount);
+                }
+            }
+            event.success = true;
+        } finally {
+            event.commit();
+        }
+    }
 
+    /**
+     * Reads the total sales of referred users stored on other shards, one query per shard.
+     *
+     * @param referrals Referrals of one level.
+     * @return Total sales per remote referred user ID, empty without sharding.
+     */
+    private Map<String, Money> findRemoteTotalSales(List<Referral> referrals) {
+        Map<Integer, List<String>> remoteIds = new TreeMap<>();
         for (Referral referral : referrals) {
-            if (referral != null) {
-                BigDecimal totalSales = referral.getReferred().getTotalSales();
-                BigDecimal commissionAmount = totalSales.multiply(rate);
-
-                Commission commission = new Commission();
-                commission.setUser(user);
-                commission.setCommissionAmount(commissionAmount);
-
-                commissions.add(commission);
-                log.debug("Commission calculated for user: {} - Amount: {}", user, commissionAmount);
+            String referredId = referral.getReferredId();
+            if (!shardRouter.isLocal(referredId)) {
+                remoteIds.computeIfAbsent(shardRouter.shardOf(referredId), shard -> new ArrayList<>()).add(referredId);
             }
         }
+        if (remoteIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Money> totalSales = new HashMap<>();
+        remoteIds.forEach((shard, userIds) -> shardRouter.onShardPool(shard, shardJdbc -> {
+            InClause.forEachChunk(userIds, chunk -> shardJdbc.query(SELECT_TOTAL_SALES,
+                    new MapSqlParameterSource("userIds", chunk), rs -> {
+                        BigDecimal sales = rs.getBigDecimal("total_sales");
+                        totalSales.put(rs.getString("u_id"), sales == null ? Money.ZERO : Money.of(sales));
+                    }));
+            return null;
+        }));
+        return totalSales;
     }
 }
@@ -0,0 +1,39 @@
+package com.blockstars.blockstarsassignment.sharding;
+
+import java.util.function.Supplier;
+
+/**
+ * Shard selected for the current thread. Must be set before a transaction starts, because the
+ * transaction binds its connection from {@link ShardRoutingDataSource} when it begins.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * @return The current shard, null for the default shard.
+     */
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs the action with the given shard selected, restoring the previous selection afterwards.
+     */
+    public static <T> T call(int shard, Supplier<T> action) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.blockstars.blockstarsassignment.sharding;
+
+/**
+ * Shard key function: maps a user id to the shard holding the user, their referrals and commissions.
+ */
+public final class ShardKeys {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ShardKeys() {
+    }
+
+    /**
+     * Jump consistent hash (Lamping and Veach) of the user id. Going from n to n + 1 shards moves about
+     * 1 / (n + 1) of the users, all of them to the new shard, see {@link ShardRebalancer}.
+     *
+     * @param userId     ID of the user.
+     * @param shardCount Number of shards.
+     * @return Shard index in [0, shardCount).
+     */
+    public static int shardFor(String userId, int shardCount) {
+        long key = hash(userId);
+        long bucket = -1;
+        long next = 0;
+        while (next < shardCount) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+
+    // 64-bit FNV-1a over the UTF-16 chars, defined here so the placement is stable across JVMs and releases
+    private static long hash(String userId) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < userId.length(); i++) {
+            hash ^= userId.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,252 @@
+package com.blockstars.blockstarsassignment.sharding;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.blockstars.blockstarsassignment.BlockStarsAssignmentApplication;
+
+/**
+ * Moves users to the shard {@link ShardKeys} assigns them for the configured number of shards, together
+ * with their referrals and commissions. Run it after changing sharding.shards, with the application stopped:
+ * users are copied to their new shard, the user directory is updated and only then are the rows deleted from
+ * the old shard, so an interrupted run can simply be started again. Only active with the {@code rebalance}
+ * profile, see application-rebalance.properties, and run through {@link #main(String[])}.
+ */
+@Component
+@Profile("rebalance")
+public class ShardRebalancer implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    private static final String SELECT_USER_PAGE = "SELECT u_id FROM users WHERE u_id > :lastUserId "
+            + "ORDER BY u_id LIMIT :pageSize";
+
+    // Rows owned by a user and the column naming the owner, parents first. Referrals live with the referrer.
+    private static final List<OwnedTable> OWNED_TABLES = Arrays.asList(
+            new OwnedTable("users", "u_id", null),
+            new OwnedTable("user_referrals", "referrer_id", "id"),
+            new OwnedTable("commissions", "user_id", "commission_id"),
+            new OwnedTable("commissions_archive", "user_id", null));
+
+    private final ShardRouter shardRouter;
+    private final ShardRoutingDataSource dataSource;
+
+    @Value("${rebalance.page-size:1000}")
+    private int pageSize;
+
+    /**
+     * Moves the users and exits, like any other one-off run of the application.
+     */
+    public static void main(String[] args) {
+        SpringApplication application = new SpringApplication(BlockStarsAssignmentApplication.class);
+        application.setAdditionalProfiles("rebalance");
+        System.exit(SpringApplication.exit(application.run(args)));
+    }
+
+    public ShardRebalancer(ShardRouter shardRouter, ObjectProvider<ShardRoutingDataSource> dataSource) {
+        this.shardRouter = shardRouter;
+        this.dataSource = dataSource.getIfAvailable();
+    }
+
+    @Override
+    public void run(String... args) {
+        rebalance();
+    }
+
+    /**
+     * @return Number of users moved.
+     */
+    public long rebalance() {
+        if (!shardRouter.isEnabled()) {
+            throw new IllegalStateException("Rebalancing requires sharding.enabled=true");
+        }
+        int shardCount = shardRouter.getShardCount();
+        log.info("Rebalancing users over {} shards", shardCount);
+        long start = System.nanoTime();
+
+        long moved = 0;
+        for (int source = 0; source < shardCount; source++) {
+            moved += rebalanceShard(source);
+        }
+        alignIdentities();
+
+        log.info("Moved {} users in {} ms", moved, (System.nanoTime() - start) / 1_000_000);
+        return moved;
+    }
+
+    private long rebalanceShard(int source) {
+        NamedParameterJdbcTemplate sourceJdbc = jdbc(source);
+        long moved = 0;
+        String lastUserId = "";
+        List<String> page;
+        do {
+            page = sourceJdbc.queryForList(SELECT_USER_PAGE,
+                    new MapSqlParameterSource("lastUserId", lastUserId).addValue("pageSize", pageSize), String.class);
+            if (page.isEmpty()) {
+                break;
+            }
+            lastUserId = page.get(page.size() - 1);
+
+            Map<Integer, List<String>> misplaced = new TreeMap<>();
+            for (String userId : page) {
+                int target = shardRouter.shardOf(userId);
+                if (target != source) {
+                    misplaced.computeIfAbsent(target, shard -> new ArrayList<>()).add(userId);
+                }
+            }
+            for (Map.Entry<Integer, List<String>> target : misplaced.entrySet()) {
+                move(source, target.getKey(), target.getValue());
+                moved += target.getValue().size();
+            }
+        } while (page.size() == pageSize);
+        log.info("Moved {} users off shard {}", moved, source);
+        return moved;
+    }
+
+    /**
+     * Copies the users' rows to the target, points the directory at it and deletes the rows on the source.
+     * Each step is idempotent: the copy first removes what an interrupted run left on the target.
+     */
+    private void move(int source, int target, List<String> userIds) {
+        NamedParameterJdbcTemplate sourceJdbc = jdbc(source);
+        NamedParameterJdbcTemplate targetJdbc = jdbc(target);
+        MapSqlParameterSource params = new MapSqlParameterSource("userIds", userIds);
+        List<OwnedTable> tables = new ArrayList<>();
+        for (OwnedTable table : OWNED_TABLES) {
+            if (tableExists(sourceJdbc, table.name)) {
+                if (!tableExists(targetJdbc, table.name)) {
+                    throw new IllegalStateException(table.name + " is missing on shard " + target
+                            + ", create the schema on every shard before rebalancing");
+                }
+                tables.add(table);
+            }
+        }
+
+        transaction(target).executeWithoutResult(status -> {
+            deleteOwned(targetJdbc, tables, params);
+            for (OwnedTable table : tables) {
+                List<Map<String, Object>> rows = sourceJdbc.queryForList(table.selectOwned(), params);
+                if (!rows.isEmpty()) {
+                    SqlParameterSource[] batch = rows.stream().map(MapSqlParameterSource::new)
+                            .toArray(SqlParameterSource[]::new);
+                    targetJdbc.batchUpdate(OwnedTable.insert(table.name, rows.get(0).keySet()), batch);
+                }
+            }
+        });
+        shardRouter.moveInDirectory(userIds, target);
+        transaction(source).executeWithoutResult(status -> deleteOwned(sourceJdbc, tables, params));
+        log.debug("Moved {} users from shard {} to shard {}", userIds.size(), source, target);
+    }
+
+    private static void deleteOwned(NamedParameterJdbcTemplate shardJdbc, List<OwnedTable> tables,
+                                    MapSqlParameterSource params) {
+        // Children first, the default shard may have foreign keys from ddl-auto
+        for (int i = tables.size() - 1; i >= 0; i--) {
+            shardJdbc.update(tables.get(i).deleteOwned(), params);
+        }
+    }
+
+    /**
+     * Moved rows keep their ids, which follow the interleave of the old shard count. On MariaDB every shard
+     * continues above the highest id of all shards, so the new interleave cannot hand out an id in use elsewhere.
+     */
+    private void alignIdentities() {
+        int shardCount = shardRouter.getShardCount();
+        if (!isMariaDb(jdbc(0))) {
+            return;
+        }
+        for (OwnedTable table : OWNED_TABLES) {
+            if (table.idColumn == null) {
+                continue;
+            }
+            long max = 0;
+            for (int shard = 0; shard < shardCount; shard++) {
+                Long shardMax = jdbc(shard).getJdbcTemplate().queryForObject(
+                        "SELECT COALESCE(MAX(" + table.idColumn + "), 0) FROM " + table.name, Long.class);
+                max = Math.max(max, shardMax == null ? 0 : shardMax);
+            }
+            for (int shard = 0; shard < shardCount; shard++) {
+                jdbc(shard).getJdbcTemplate().execute("ALTER TABLE " + table.name + " AUTO_INCREMENT = " + (max + 1));
+            }
+            log.info("{} ids continue above {} on every shard", table.name, max);
+        }
+    }
+
+    private NamedParameterJdbcTemplate jdbc(int shard) {
+        return new NamedParameterJdbcTemplate(dataSource.getShard(shard));
+    }
+
+    private TransactionTemplate transaction(int shard) {
+        return new TransactionTemplate(new DataSourceTransactionManager(dataSource.getShard(shard)));
+    }
+
+    private static boolean tableExists(NamedParameterJdbcTemplate shardJdbc, String table) {
+        Boolean exists = shardJdbc.getJdbcTemplate().execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String name = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ROOT) : table;
+            try (ResultSet tables = metaData.getTables(connection.getCatalog(), null, name, null)) {
+                return tables.next();
+            }
+        });
+        return Boolean.TRUE.equals(exists);
+    }
+
+    private static boolean isMariaDb(NamedParameterJdbcTemplate shardJdbc) {
+        String product = shardJdbc.getJdbcTemplate().execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        return product != null && (product.contains("MariaDB") || product.contains("MySQL"));
+    }
+
+    private static final class OwnedTable {
+        private final String name;
+        private final String ownerColumn;
+        // Auto-increment id, null if the table has none of its own
+        private final String idColumn;
+
+        private OwnedTable(String name, String ownerColumn, String idColumn) {
+            this.name = name;
+            this.ownerColumn = ownerColumn;
+            this.idColumn = idColumn;
+        }
+
+        private String selectOwned() {
+            return "SELECT * FROM " + name + " WHERE " + ownerColumn + " IN (:userIds)";
+        }
+
+        private String deleteOwned() {
+            return "DELETE FROM " + name + " WHERE " + ownerColumn + " IN (:userIds)";
+        }
+
+        private static String insert(String table, Iterable<String> columns) {
+            List<String> names = new ArrayList<>();
+            List<String> values = new ArrayList<>();
+            columns.forEach(column -> {
+                names.add(column);
+                values.add(":" + column);
+            });
+            return "INSERT INTO " + table + " (" + String.join(", ", names) + ") VALUES ("
+                    + String.join(", ", values) + ")";
+        }
+    }
+}
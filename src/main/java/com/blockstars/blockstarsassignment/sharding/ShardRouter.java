@@ -0,0 +1,166 @@
+package com.blockstars.blockstarsassignment.sharding;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Selects the shard for user-scoped calls. Callers wrap the transactional service call, so the
+ * transaction starts on the right shard. Without sharding.enabled there is a single shard and
+ * every call runs unchanged.
+ */
+@Component
+public class ShardRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRouter.class);
+
+    private final int shardCount;
+    private final UserDirectory userDirectory;
+    // JDBC access to each shard's own pool, empty without sharding
+    private final List<NamedParameterJdbcTemplate> shardPools = new ArrayList<>();
+
+    public ShardRouter(ObjectProvider<ShardingProperties> shardingProperties, ObjectProvider<UserDirectory> userDirectory,
+                       ObjectProvider<ShardRoutingDataSource> routingDataSource) {
+        ShardingProperties properties = shardingProperties.getIfAvailable();
+        this.shardCount = properties == null ? 1 : properties.getShards().size();
+        this.userDirectory = userDirectory.getIfAvailable();
+        ShardRoutingDataSource dataSource = routingDataSource.getIfAvailable();
+        if (dataSource != null) {
+            for (int shard = 0; shard < shardCount; shard++) {
+                shardPools.add(new NamedParameterJdbcTemplate(dataSource.getShard(shard)));
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return userDirectory != null;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public int shardOf(String userId) {
+        return ShardKeys.shardFor(userId, shardCount);
+    }
+
+    /**
+     * @return Whether the user lives on the shard selected for the current thread.
+     */
+    public boolean isLocal(String userId) {
+        if (!isEnabled()) {
+            return true;
+        }
+        Integer current = ShardContext.current();
+        return shardOf(userId) == (current == null ? 0 : current);
+    }
+
+    /**
+     * @return The shards other than the one selected for the current thread.
+     */
+    public List<Integer> otherShards() {
+        Integer current = ShardContext.current();
+        List<Integer> others = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            if (shard != (current == null ? 0 : current)) {
+                others.add(shard);
+            }
+        }
+        return others;
+    }
+
+    /**
+     * Runs JDBC work directly on a shard's pool. It never joins the transaction of the current shard,
+     * so it can read from, or write in its own auto-commit statements to, any other shard.
+     */
+    public <T> T onShardPool(int shard, Function<NamedParameterJdbcTemplate, T> action) {
+        return action.apply(shardPools.get(shard));
+    }
+
+    /**
+     * Runs the action on the shard of the given user.
+     */
+    public <T> T onShardOf(String userId, Supplier<T> action) {
+        return isEnabled() ? ShardContext.call(shardOf(userId), action) : action.get();
+    }
+
+    /**
+     * Runs the action once per shard, e.g. for schema maintenance.
+     */
+    public void forEachShard(Runnable action) {
+        for (int shard = 0; shard < shardCount; shard++) {
+            ShardContext.call(shard, () -> {
+                action.run();
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Groups user ids by shard, so per-user work can run shard by shard.
+     */
+    public <V> Map<Integer, Map<String, V>> groupByShard(Map<String, V> byUserId) {
+        Map<Integer, Map<String, V>> grouped = new TreeMap<>();
+        byUserId.forEach((userId, value) -> grouped.computeIfAbsent(shardOf(userId), shard -> new TreeMap<>())
+                .put(userId, value));
+        return grouped;
+    }
+
+    /**
+     * Registers a user on the shard of its id after claiming the email in the global directory.
+     *
+     * @throws IllegalArgumentException if the email is already registered on any shard.
+     */
+    public <T> T registerUser(String userId, String email, Function<String, T> register) {
+        if (!isEnabled()) {
+            return register.apply(userId);
+        }
+        int shard = shardOf(userId);
+        if (!userDirectory.claim(userId, email, shard)) {
+            log.error("User with email {} already exists.", email);
+            throw new IllegalArgumentException("User with this email already exists");
+        }
+        try {
+            return ShardContext.call(shard, () -> register.apply(userId));
+        } catch (RuntimeException e) {
+            userDirectory.release(userId);
+            throw e;
+        }
+    }
+
+    /**
+     * Locates the referred user of a referral. Referrals are stored on the referrer's shard; a referred user
+     * on another shard is recorded by id and its sales are read from its own shard.
+     *
+     * @return ID of the referred user if it lives on another shard than the referrer, empty if it is local.
+     * @throws IllegalArgumentException if no user is registered with the email.
+     */
+    public Optional<String> findRemoteReferred(String referrerId, String referredEmail) {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+        UserDirectory.Entry referred = userDirectory.findByEmail(referredEmail)
+                .orElseThrow(() -> {
+                    log.error("User not found with email: {}", referredEmail);
+                    return new IllegalArgumentException("User not found");
+                });
+        return referred.getShard() == shardOf(referrerId) ? Optional.empty() : Optional.of(referred.getUserId());
+    }
+
+    /**
+     * Records that the given users now live on another shard, used by {@link ShardRebalancer}.
+     */
+    void moveInDirectory(List<String> userIds, int shard) {
+        userDirectory.move(userIds, shard);
+    }
+}
@@ -0,0 +1,83 @@
+package com.blockstars.blockstarsassignment.sharding;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Replaces the single datasource with one routing over sharding.shards[*], plus the global user directory
+ * on sharding.global. Only active with sharding.enabled=true.
+ */
+@Configuration
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    // Destroy methods close the pools with the context
+    @Bean(destroyMethod = "close")
+    @Primary
+    public ShardRoutingDataSource dataSource(ShardingProperties properties) {
+        List<DataSourceProperties> shards = properties.getShards();
+        if (shards.isEmpty()) {
+            throw new IllegalStateException("sharding.enabled requires at least one sharding.shards entry");
+        }
+        List<DataSource> pools = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            HikariDataSource dataSource = shards.get(shard).initializeDataSourceBuilder()
+                    .type(HikariDataSource.class).build();
+            dataSource.setPoolName("shard-" + shard);
+            String url = dataSource.getJdbcUrl();
+            if (url.startsWith("jdbc:mariadb:") || url.startsWith("jdbc:mysql:")) {
+                // Interleave AUTO_INCREMENT ids, so referral and commission ids stay unique across shards
+                // and do not collide in the shared second-level cache
+                dataSource.setConnectionInitSql("SET SESSION auto_increment_increment = " + shards.size()
+                        + ", auto_increment_offset = " + (shard + 1));
+            }
+            // Added before the schema script runs, so a failing script still closes the pools created so far
+            pools.add(dataSource);
+        }
+
+        ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource(pools);
+        if (properties.getSchemaScript() != null) {
+            ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                    new DefaultResourceLoader().getResource(properties.getSchemaScript()));
+            try {
+                pools.forEach(pool -> DatabasePopulatorUtils.execute(populator, pool));
+            } catch (RuntimeException e) {
+                closeQuietly(routingDataSource);
+                throw e;
+            }
+        }
+        return routingDataSource;
+    }
+
+    @Bean(destroyMethod = "close")
+    public UserDirectory userDirectory(ShardingProperties properties) {
+        HikariDataSource dataSource = properties.getGlobal().initializeDataSourceBuilder()
+                .type(HikariDataSource.class).build();
+        dataSource.setPoolName("user-directory");
+        return new UserDirectory(dataSource);
+    }
+
+    private static void closeQuietly(ShardRoutingDataSource dataSource) {
+        try {
+            dataSource.close();
+        } catch (IOException e) {
+            // Startup already failed, the original exception is the one to report
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.blockstars.blockstarsassignment.sharding;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Datasources of the shards and of the global user directory, bound from sharding.*.
+ */
+@ConfigurationProperties(prefix = "sharding")
+public class ShardingProperties {
+
+    private List<DataSourceProperties> shards = new ArrayList<>();
+
+    private DataSourceProperties global = new DataSourceProperties();
+
+    // Optional script run on every shard at startup, ddl-auto only reaches shard 0
+    private String schemaScript;
+
+    public List<DataSourceProperties> getShards() {
+        return shards;
+    }
+
+    public void setShards(List<DataSourceProperties> shards) {
+        this.shards = shards;
+    }
+
+    public DataSourceProperties getGlobal() {
+        return global;
+    }
+
+    public void setGlobal(DataSourceProperties global) {
+        this.global = global;
+    }
+
+    public String getSchemaScript() {
+        return schemaScript;
+    }
+
+    public void setSchemaScript(String schemaScript) {
+        this.schemaScript = schemaScript;
+    }
+}
@@ -0,0 +1,104 @@
+package com.blockstars.blockstarsassignment.sharding;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/**
+ * Global lookup table from user id and email to shard, kept on its own datasource. It makes emails
+ * unique across shards and locates the referred user of a referral, which is known by email only.
+ * Owns its pool and closes it with the application context.
+ */
+public class UserDirectory implements Closeable {
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS user_directory ("
+            + "u_id VARCHAR(255) NOT NULL PRIMARY KEY, "
+            + "email VARCHAR(255) NOT NULL UNIQUE, "
+            + "shard INT NOT NULL)";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public UserDirectory(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        jdbcTemplate.execute(CREATE_TABLE);
+    }
+
+    /**
+     * Claims the email for a new user.
+     *
+     * @return false if the email is already taken.
+     */
+    public boolean claim(String userId, String email, int shard) {
+        try {
+            jdbcTemplate.update("INSERT INTO user_directory (u_id, email, shard) VALUES (?, ?, ?)", userId, email, shard);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Removes the entry of a user whose registration failed on its shard.
+     */
+    public void release(String userId) {
+        jdbcTemplate.update("DELETE FROM user_directory WHERE u_id = ?", userId);
+    }
+
+    /**
+     * @return The entry of the user with the given email, empty if unknown.
+     */
+    public Optional<Entry> findByEmail(String email) {
+        List<Entry> entries = jdbcTemplate.query("SELECT u_id, shard FROM user_directory WHERE email = ?",
+                (rs, row) -> new Entry(rs.getString("u_id"), rs.getInt("shard")), email);
+        return entries.stream().findFirst();
+    }
+
+    /**
+     * Records that the given users now live on another shard.
+     */
+    public void move(Collection<String> userIds, int shard) {
+        namedParameterJdbcTemplate.update("UPDATE user_directory SET shard = :shard WHERE u_id IN (:userIds)",
+                new MapSqlParameterSource("shard", shard).addValue("userIds", userIds));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (dataSource instanceof Closeable) {
+            ((Closeable) dataSource).close();
+        }
+    }
+
+    /**
+     * User id and shard of a registered user.
+     */
+    public static final class Entry {
+        private final String userId;
+        private final int shard;
+
+        public Entry(String userId, int shard) {
+            this.userId = userId;
+            this.shard = shard;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public int getShard() {
+            return shard;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.blockstars.blockstarsassignment;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.blockstars.blockstarsassignment.domain.User;
+import com.blockstars.blockstarsassignment.dto.UserDto;
+import com.blockstars.blockstarsassignment.service.UserService;
+
+/**
+ * Runs the application against an in-memory H2 database instead of MariaDB, without scheduled jobs,
+ * so tests flush sales themselves. Subclasses without further configuration share one context.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:application-test;DB_CLOSE_DELAY=-1",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.show-sql=false",
+		"scheduling.enabled=false",
+		"commissions.archive.enabled=false" })
+public abstract class H2ApplicationTest {
+
+	@Autowired
+	protected UserService userService;
+
+	protected User register(BigDecimal totalSales) {
+		UserDto payload = new UserDto();
+		payload.setFullName("Test User");
+		payload.setEmail(UUID.randomUUID() + "@example.com");
+		payload.setPassword("password");
+		payload.setTotalSales(totalSales);
+		return userService.registerUser(payload);
+	}
+}
@@ -0,0 +1,99 @@
+package com.blockstars.blockstarsassignment.controller;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.blockstars.blockstarsassignment.H2ApplicationTest;
+import com.blockstars.blockstarsassignment.domain.User;
+import com.blockstars.blockstarsassignment.service.SalesEventService;
+import com.blockstars.blockstarsassignment.service.UserService;
+
+// UserService is spied, so the tests can tell whether a request reached the commission query
+@SpyBean(UserService.class)
+@AutoConfigureMockMvc
+class UserControllerTest extends H2ApplicationTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private SalesEventService salesEventService;
+
+	@AfterEach
+	void drainSales() {
+		salesEventService.shutdown();
+	}
+
+	private static String sale(String amount) {
+		return "{\"userId\":\"" + UUID.randomUUID() + "\",\"amount\":" + amount + "}";
+	}
+
+	@Test
+	void salesRequireTheAdminRole() throws Exception {
+		mockMvc.perform(post("/api/v1/users/sales").with(httpBasic("user", "password"))
+				.contentType(MediaType.APPLICATION_JSON).content("[" + sale("1.00") + "]"))
+				.andExpect(status().isForbidden());
+		mockMvc.perform(post("/api/v1/users/sales").with(httpBasic("admin", "admin"))
+				.contentType(MediaType.APPLICATION_JSON).content("[" + sale("1.00") + "]"))
+				.andExpect(status().isAccepted());
+	}
+
+	@Test
+	void salesStreamIsReadLineByLine() throws Exception {
+		mockMvc.perform(post("/api/v1/users/sales").with(httpBasic("admin", "admin"))
+				.contentType(MediaType.APPLICATION_NDJSON).content(sale("1.00") + "\n" + sale("2.50") + "\n"))
+				.andExpect(status().isAccepted());
+	}
+
+	@Test
+	void malformedSalesStreamIsABadRequest() throws Exception {
+		mockMvc.perform(post("/api/v1/users/sales").with(httpBasic("admin", "admin"))
+				.contentType(MediaType.APPLICATION_NDJSON).content(sale("1.00") + "\n{\"userId\": \n"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void matchingETagIsAnsweredWithoutLoadingCommissions() throws Exception {
+		User user = register(BigDecimal.ZERO);
+		String eTag = mockMvc.perform(get("/api/v1/users/commissions").param("userId", user.getUId())
+				.with(httpBasic("user", "password")))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		assertNotNull(eTag);
+		clearInvocations(userService);
+
+		mockMvc.perform(get("/api/v1/users/commissions").param("userId", user.getUId())
+				.header(HttpHeaders.IF_NONE_MATCH, eTag).with(httpBasic("user", "password")))
+				.andExpect(status().isNotModified());
+
+		verify(userService, never()).viewCommissions(anyString());
+	}
+
+	@Test
+	void commissionsOfAnUnknownUserAreNotFound() throws Exception {
+		mockMvc.perform(get("/api/v1/users/commissions").param("userId", UUID.randomUUID().toString())
+				.with(httpBasic("user", "password")))
+				.andExpect(status().isNotFound());
+
+		verify(userService, never()).viewCommissions(anyString());
+	}
+}
@@ -0,0 +1,77 @@
+package com.blockstars.blockstarsassignment.domain;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the former BigDecimal commission calculation with the Money based one over 1M referrals.
+ * Run after {@code mvn test-compile} with the main method, which adds the GC profiler so that
+ * gc.alloc.rate.norm shows the bytes allocated per referral.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(CommissionCalculationBenchmark.REFERRALS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommissionCalculationBenchmark {
+
+	static final int REFERRALS = 1_000_000;
+
+	private static final BigDecimal RATE = new BigDecimal("0.10");
+	private static final long RATE_BPS = Money.toBasisPoints(RATE);
+
+	private BigDecimal[] bigDecimalSales;
+	private Money[] moneySales;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		bigDecimalSales = new BigDecimal[REFERRALS];
+		moneySales = new Money[REFERRALS];
+		for (int i = 0; i < REFERRALS; i++) {
+			bigDecimalSales[i] = BigDecimal.valueOf(random.nextInt(10_000_000), Money.SCALE);
+			moneySales[i] = Money.of(bigDecimalSales[i]);
+		}
+	}
+
+	@Benchmark
+	public void bigDecimal(Blackhole blackhole) {
+		for (BigDecimal totalSales : bigDecimalSales) {
+			blackhole.consume(totalSales.multiply(RATE));
+		}
+	}
+
+	@Benchmark
+	public void money(Blackhole blackhole) {
+		for (Money totalSales : moneySales) {
+			blackhole.consume(Money.ofMinor(Money.multiplyByRate(totalSales.getMinorUnits(), RATE_BPS)));
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(CommissionCalculationBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+}
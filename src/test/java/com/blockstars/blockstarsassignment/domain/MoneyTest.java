@@ -0,0 +1,56 @@
+package com.blockstars.blockstarsassignment.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class MoneyTest {
+
+	private static final String[] RATES = { "0.10", "0.05", "0.03" };
+
+	// Reference result: the former BigDecimal calculation reduced to the cent as persisted
+	private static BigDecimal legacyCommission(BigDecimal totalSales, BigDecimal rate) {
+		return totalSales.multiply(rate).setScale(Money.SCALE, Money.ROUNDING);
+	}
+
+	private static void assertMatchesLegacy(BigDecimal totalSales) {
+		for (String r : RATES) {
+			BigDecimal rate = new BigDecimal(r);
+			BigDecimal actual = Money.of(totalSales).multiplyByRate(Money.toBasisPoints(rate)).toBigDecimal();
+			assertEquals(legacyCommission(totalSales, rate), actual, () -> totalSales + " * " + rate);
+		}
+	}
+
+	@Test
+	void goldenValuesMatchLegacyCalculation() {
+		String[] sales = { "0.00", "0.01", "0.05", "0.15", "0.50", "1.00", "16.65", "99.99", "100.00",
+				"1234.55", "999999.95", "-0.05", "-16.65", "92233720368.75" };
+		for (String s : sales) {
+			assertMatchesLegacy(new BigDecimal(s));
+		}
+	}
+
+	@Test
+	void randomValuesMatchLegacyCalculation() {
+		Random random = new Random(42);
+		for (int i = 0; i < 1_000_000; i++) {
+			assertMatchesLegacy(BigDecimal.valueOf(random.nextInt(Integer.MAX_VALUE), Money.SCALE));
+		}
+	}
+
+	@Test
+	void resultsAlwaysHaveMoneyScale() {
+		assertEquals(Money.SCALE, Money.of(new BigDecimal("100")).multiplyByRate(1000L).toBigDecimal().scale());
+		assertEquals(new BigDecimal("10.00"), Money.of(new BigDecimal("100")).multiplyByRate(1000L).toBigDecimal());
+	}
+
+	@Test
+	void tiesRoundAwayFromZero() {
+		// 0.05 * 0.10 = 0.005 -> 0.01
+		assertEquals(Money.ofMinor(1L), Money.ofMinor(5L).multiplyByRate(1000L));
+		assertEquals(Money.ofMinor(-1L), Money.ofMinor(-5L).multiplyByRate(1000L));
+	}
+}
@@ -0,0 +1,61 @@
+package com.blockstars.blockstarsassignment.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.OptionalLong;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.blockstars.blockstarsassignment.H2ApplicationTest;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+
+class SecondLevelCacheTest extends H2ApplicationTest {
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private static long maximumSize(CacheManager cacheManager, String region) {
+		@SuppressWarnings("unchecked")
+		CaffeineConfiguration<Object, Object> configuration = cacheManager.getCache(region)
+				.getConfiguration(CaffeineConfiguration.class);
+		OptionalLong maximumSize = configuration.getMaximumSize();
+		return maximumSize.orElse(-1);
+	}
+
+	@Test
+	void regionsUseTheSizesFromApplicationConf() {
+		CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+				.getCacheManager();
+
+		assertEquals(50000, maximumSize(cacheManager, "users"));
+		assertEquals(100000, maximumSize(cacheManager, "referrals"));
+		assertEquals(20000, maximumSize(cacheManager, "referral-queries"));
+	}
+
+	@Test
+	void userWithMoneyIsReadBackFromTheSecondLevelCache() {
+		String userId = register(new BigDecimal("1234.56")).getUId();
+
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		EntityManager entityManager = entityManagerFactory.createEntityManager();
+		try {
+			User user = entityManager.find(User.class, userId);
+			assertEquals(Money.of(new BigDecimal("1234.56")), user.getTotalSales());
+		} finally {
+			entityManager.close();
+		}
+		assertEquals(1, statistics.getSecondLevelCacheHitCount());
+		assertEquals(0, statistics.getPrepareStatementCount());
+	}
+}
@@ -0,0 +1,123 @@
+package com.blockstars.blockstarsassignment.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class CommissionArchiveServiceTest {
+
+	private static final int PARTITIONS_AHEAD = 3;
+
+	private final List<Map<String, Object>> partitions = new ArrayList<>();
+
+	private JdbcTemplate session;
+
+	private CommissionArchiveService service;
+
+	@BeforeEach
+	void setUp() {
+		session = mock(JdbcTemplate.class);
+		when(session.queryForList(anyString(), eq("commissions"))).thenReturn(partitions);
+		service = new CommissionArchiveService(null, null, null, null);
+		ReflectionTestUtils.setField(service, "partitionsAhead", PARTITIONS_AHEAD);
+	}
+
+	private void partition(String name, String description) {
+		Map<String, Object> row = new HashMap<>();
+		row.put("PARTITION_NAME", name);
+		row.put("PARTITION_DESCRIPTION", description);
+		partitions.add(row);
+	}
+
+	private void rows(String partition, long count) {
+		when(session.queryForObject("SELECT COUNT(*) FROM commissions PARTITION (" + partition + ")", Long.class))
+				.thenReturn(count);
+	}
+
+	@Test
+	void partitionBoundsAreParsedFromQuotedDescriptions() {
+		partition("p_history", "'2026-01-01'");
+		partition("p202601", "'2026-02-01 00:00:00'");
+		partition("p_future", "MAXVALUE");
+
+		TreeMap<LocalDate, String> parsed = service.getPartitions(session);
+
+		assertEquals(2, parsed.size());
+		assertEquals("p_history", parsed.get(LocalDate.of(2026, 1, 1)));
+		assertEquals("p202601", parsed.get(LocalDate.of(2026, 2, 1)));
+	}
+
+	@Test
+	void missingMonthsAreSplitOffTheFuturePartition() {
+		YearMonth current = YearMonth.now();
+		partition("p_history", "'" + current.minusMonths(1).atDay(1) + "'");
+		partition("p" + current.toString().replace("-", ""), "'" + current.plusMonths(1).atDay(1) + "'");
+		partition("p_future", "MAXVALUE");
+
+		service.addFuturePartitions(session);
+
+		ArgumentCaptor<String> ddl = ArgumentCaptor.forClass(String.class);
+		verify(session, Mockito.times(PARTITIONS_AHEAD)).execute(ddl.capture());
+		for (int i = 0; i < PARTITIONS_AHEAD; i++) {
+			YearMonth month = current.plusMonths(i + 1L);
+			assertEquals("ALTER TABLE commissions REORGANIZE PARTITION p_future INTO ("
+					+ "PARTITION p" + month.toString().replace("-", "") + " VALUES LESS THAN ('"
+					+ month.plusMonths(1).atDay(1) + "'), PARTITION p_future VALUES LESS THAN (MAXVALUE))",
+					ddl.getAllValues().get(i));
+		}
+	}
+
+	@Test
+	void futurePartitionIsLeftAloneWhenMonthsAheadExist() {
+		YearMonth last = YearMonth.now().plusMonths(PARTITIONS_AHEAD);
+		partition("p" + last.toString().replace("-", ""), "'" + last.plusMonths(1).atDay(1) + "'");
+		partition("p_future", "MAXVALUE");
+
+		service.addFuturePartitions(session);
+
+		verify(session, never()).execute(anyString());
+	}
+
+	@Test
+	void onlyEmptyPartitionsEndingByTheCutoffAreDropped() {
+		LocalDate cutoff = LocalDate.of(2026, 4, 1);
+		partition("p_history", "'2026-01-01'");
+		partition("p202601", "'2026-02-01'");
+		partition("p202602", "'2026-03-01'");
+		partition("p202603", "'2026-04-01'");
+		partition("p202604", "'2026-05-01'");
+		partition("p_future", "MAXVALUE");
+		rows("p_history", 0);
+		rows("p202601", 0);
+		rows("p202602", 7);
+		rows("p202603", 0);
+		rows("p202604", 0);
+
+		service.dropEmptyPartitionsBefore(session, cutoff);
+
+		verify(session).execute("ALTER TABLE commissions DROP PARTITION p202601");
+		verify(session).execute("ALTER TABLE commissions DROP PARTITION p202603");
+		verify(session, never()).execute("ALTER TABLE commissions DROP PARTITION p202602");
+		verify(session, never()).execute("ALTER TABLE commissions DROP PARTITION p202604");
+		verify(session, never()).execute("ALTER TABLE commissions DROP PARTITION p_history");
+	}
+}
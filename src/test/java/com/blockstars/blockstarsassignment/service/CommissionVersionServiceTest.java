@@ -0,0 +1,49 @@
+package com.blockstars.blockstarsassignment.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.blockstars.blockstarsassignment.H2ApplicationTest;
+import com.blockstars.blockstarsassignment.domain.User;
+
+class CommissionVersionServiceTest extends H2ApplicationTest {
+
+	@Autowired
+	private CommissionVersionService commissionVersionService;
+
+	@Test
+	void unknownUserHasNoETag() {
+		assertFalse(commissionVersionService.getETag(UUID.randomUUID().toString()).isPresent());
+	}
+
+	@Test
+	void eTagIsWeakAndStableWithoutChanges() {
+		User user = register(BigDecimal.ZERO);
+
+		String eTag = commissionVersionService.getETag(user.getUId()).get();
+
+		assertTrue(eTag.startsWith("W/\""));
+		assertEquals(eTag, commissionVersionService.getETag(user.getUId()).get());
+	}
+
+	@Test
+	void referralChangesTheReferrersETagOnly() {
+		User referrer = register(BigDecimal.ZERO);
+		User referred = register(new BigDecimal("100.00"));
+		String referrerETag = commissionVersionService.getETag(referrer.getUId()).get();
+		String referredETag = commissionVersionService.getETag(referred.getUId()).get();
+
+		userService.referUser(referrer.getUId(), referred.getEmail(), 1);
+
+		assertNotEquals(referrerETag, commissionVersionService.getETag(referrer.getUId()).get());
+		assertEquals(referredETag, commissionVersionService.getETag(referred.getUId()).get());
+	}
+}
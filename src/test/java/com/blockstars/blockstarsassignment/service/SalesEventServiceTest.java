@@ -0,0 +1,143 @@
+package com.blockstars.blockstarsassignment.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.blockstars.blockstarsassignment.H2ApplicationTest;
+import com.blockstars.blockstarsassignment.domain.User;
+import com.blockstars.blockstarsassignment.dto.SalesEventDto;
+
+class SalesEventServiceTest extends H2ApplicationTest {
+
+	// Largest value of the DECIMAL(19,2) total_sales column, any increment makes the update fail
+	private static final BigDecimal MAX_TOTAL_SALES = new BigDecimal("99999999999999999.99");
+
+	@Autowired
+	private SalesEventService salesEventService;
+
+	@Autowired
+	private CommissionVersionService commissionVersionService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	@AfterEach
+	void drainAndReset() {
+		ReflectionTestUtils.setField(salesEventService, "maxPendingUsers", 100000);
+		ReflectionTestUtils.setField(salesEventService, "maxRetries", 3);
+		salesEventService.shutdown();
+	}
+
+	private static SalesEventDto sale(User user, String amount) {
+		SalesEventDto event = new SalesEventDto();
+		event.setUserId(user.getUId());
+		event.setAmount(new BigDecimal(amount));
+		return event;
+	}
+
+	private BigDecimal totalSales(User user) {
+		return jdbcTemplate.queryForObject("SELECT total_sales FROM users WHERE u_id = ?", BigDecimal.class,
+				user.getUId());
+	}
+
+	private void setTotalSales(User user, BigDecimal totalSales) {
+		jdbcTemplate.update("UPDATE users SET total_sales = ? WHERE u_id = ?", totalSales, user.getUId());
+	}
+
+	@Test
+	void eventsAreCoalescedPerUserAndAddedToTheCurrentTotal() {
+		User first = register(new BigDecimal("100.00"));
+		User second = register(null);
+
+		assertEquals(3, salesEventService.ingest(Arrays.asList(sale(first, "10.00"), sale(first, "5.50"),
+				sale(second, "1.00"))));
+		assertEquals(1, salesEventService.ingest(Collections.singletonList(sale(first, "0.25"))));
+		// Changed after the events were accepted, the flush increments instead of overwriting it
+		setTotalSales(first, new BigDecimal("200.00"));
+		salesEventService.flush();
+
+		assertEquals(new BigDecimal("215.75"), totalSales(first));
+		assertEquals(new BigDecimal("1.00"), totalSales(second));
+	}
+
+	@Test
+	void salesBumpTheUplinesCommissionVersion() {
+		User referrer = register(BigDecimal.ZERO);
+		User referred = register(new BigDecimal("100.00"));
+		userService.referUser(referrer.getUId(), referred.getEmail(), 1);
+		String referrerETag = commissionVersionService.getETag(referrer.getUId()).get();
+		String referredETag = commissionVersionService.getETag(referred.getUId()).get();
+
+		salesEventService.ingest(Collections.singletonList(sale(referred, "50.00")));
+		salesEventService.flush();
+
+		assertNotEquals(referrerETag, commissionVersionService.getETag(referrer.getUId()).get());
+		assertEquals(referredETag, commissionVersionService.getETag(referred.getUId()).get());
+	}
+
+	@Test
+	void requestThatOverfillsTheWindowIsRejectedAsAWhole() {
+		ReflectionTestUtils.setField(salesEventService, "maxPendingUsers", 2);
+		User first = register(BigDecimal.ZERO);
+		User second = register(BigDecimal.ZERO);
+		User third = register(BigDecimal.ZERO);
+		salesEventService.ingest(Collections.singletonList(sale(first, "1.00")));
+
+		assertThrows(IllegalStateException.class, () -> salesEventService.ingest(
+				Arrays.asList(sale(first, "2.00"), sale(second, "2.00"), sale(third, "2.00"))));
+		salesEventService.flush();
+
+		assertEquals(new BigDecimal("1.00"), totalSales(first));
+		assertEquals(new BigDecimal("0.00"), totalSales(second));
+		assertEquals(new BigDecimal("0.00"), totalSales(third));
+	}
+
+	@Test
+	void invalidEventRejectsTheWholeRequest() {
+		User user = register(BigDecimal.ZERO);
+		SalesEventDto missingAmount = new SalesEventDto();
+		missingAmount.setUserId(user.getUId());
+
+		assertThrows(IllegalArgumentException.class,
+				() -> salesEventService.ingest(Arrays.asList(sale(user, "1.00"), missingAmount)));
+		salesEventService.flush();
+
+		assertEquals(new BigDecimal("0.00"), totalSales(user));
+	}
+
+	@Test
+	void failingWindowIsRetriedThenAppliedUserByUser() {
+		ReflectionTestUtils.setField(salesEventService, "maxRetries", 1);
+		User good = register(BigDecimal.ZERO);
+		User bad = register(BigDecimal.ZERO);
+		setTotalSales(bad, MAX_TOTAL_SALES);
+		salesEventService.ingest(Arrays.asList(sale(good, "5.00"), sale(bad, "1.00")));
+
+		salesEventService.flush();
+		// The window is one transaction, the good delta was rolled back with the bad one
+		assertEquals(new BigDecimal("0.00"), totalSales(good));
+
+		salesEventService.ingest(Collections.singletonList(sale(good, "2.00")));
+		salesEventService.flush();
+		// Retries exhausted: applied user by user, the bad delta is dropped
+		assertEquals(new BigDecimal("5.00"), totalSales(good));
+		assertEquals(MAX_TOTAL_SALES, totalSales(bad));
+
+		salesEventService.flush();
+		// Events that arrived during the retries form the next window
+		assertEquals(new BigDecimal("7.00"), totalSales(good));
+	}
+}
@@ -0,0 +1,105 @@
+package com.blockstars.blockstarsassignment.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.blockstars.blockstarsassignment.H2ApplicationTest;
+import com.blockstars.blockstarsassignment.domain.User;
+import com.blockstars.blockstarsassignment.dto.CommissionDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class UserServiceFetchTest extends H2ApplicationTest {
+
+	private static final int REFERRALS = 5;
+
+	private static final Set<String> COMMISSION_FIELDS = new HashSet<>(Arrays.asList("commissionId", "userId",
+			"commissionAmount", "commissionDate", "commissionType", "description", "status", "paymentDate",
+			"currency", "transactionReference"));
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private User referrerWithReferrals() {
+		User referrer = register(BigDecimal.ZERO);
+		for (int i = 0; i < REFERRALS; i++) {
+			User referred = register(new BigDecimal("100.00"));
+			userService.referUser(referrer.getUId(), referred.getEmail(), 1);
+		}
+		return referrer;
+	}
+
+	private void assertCommissions(User referrer, List<CommissionDto> commissions) {
+		assertEquals(REFERRALS, commissions.size());
+		for (CommissionDto commission : commissions) {
+			assertEquals(referrer.getUId(), commission.getUserId());
+			assertEquals(new BigDecimal("10.00"), commission.getCommissionAmount());
+		}
+	}
+
+	@Test
+	void viewCommissionsLoadsReferredUsersWithTheReferralQuery() {
+		User referrer = referrerWithReferrals();
+
+		SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+		sessionFactory.getCache().evictAllRegions();
+		sessionFactory.getCache().evictQueryRegions();
+		Statistics statistics = sessionFactory.getStatistics();
+		statistics.clear();
+
+		assertCommissions(referrer, userService.viewCommissions(referrer.getUId()));
+		// 1 user lookup + 1 query per referral level + 1 insert per commission, no per-row user selects
+		assertEquals(1 + 3 + REFERRALS, statistics.getPrepareStatementCount());
+		assertEquals(0, statistics.getEntityStatistics(User.class.getName()).getFetchCount());
+	}
+
+	@Test
+	void viewCommissionsUsesSecondLevelAndQueryCacheWhenWarm() {
+		User referrer = referrerWithReferrals();
+		userService.viewCommissions(referrer.getUId());
+
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+
+		assertCommissions(referrer, userService.viewCommissions(referrer.getUId()));
+		// Referrer, referrals and referred users all come from the caches, only the commission inserts remain
+		assertEquals(REFERRALS, statistics.getPrepareStatementCount());
+		assertEquals(3, statistics.getQueryCacheHitCount());
+		assertEquals(0, statistics.getEntityStatistics(User.class.getName()).getFetchCount());
+	}
+
+	@Test
+	void commissionPayloadContainsNoNestedUser() throws Exception {
+		User referrer = referrerWithReferrals();
+
+		JsonNode payload = objectMapper.readTree(
+				objectMapper.writeValueAsBytes(userService.viewCommissions(referrer.getUId())));
+
+		assertEquals(REFERRALS, payload.size());
+		for (JsonNode row : payload) {
+			for (Iterator<String> names = row.fieldNames(); names.hasNext();) {
+				String name = names.next();
+				assertTrue(COMMISSION_FIELDS.contains(name), () -> "Unexpected field " + name);
+				assertTrue(row.get(name).isValueNode(), () -> "Nested object in field " + name);
+			}
+			assertEquals(referrer.getUId(), row.get("userId").asText());
+		}
+	}
+}
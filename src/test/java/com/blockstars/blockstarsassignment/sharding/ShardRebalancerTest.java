@@ -0,0 +1,102 @@
+package com.blockstars.blockstarsassignment.sharding;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest(properties = {
+		"sharding.enabled=true",
+		"sharding.shards[0].url=jdbc:h2:mem:rebalance-shard0;DB_CLOSE_DELAY=-1",
+		"sharding.shards[0].username=sa",
+		"sharding.shards[1].url=jdbc:h2:mem:rebalance-shard1;DB_CLOSE_DELAY=-1",
+		"sharding.shards[1].username=sa",
+		"sharding.shards[2].url=jdbc:h2:mem:rebalance-shard2;DB_CLOSE_DELAY=-1",
+		"sharding.shards[2].username=sa",
+		"sharding.global.url=jdbc:h2:mem:rebalance-directory;DB_CLOSE_DELAY=-1",
+		"sharding.global.username=sa",
+		"sharding.schema-script=classpath:sharding-schema.sql",
+		"spring.jpa.hibernate.ddl-auto=none",
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.javax.cache.uri=application.conf",
+		// Small pages, so the keyset paging continues past pages that moved users
+		"rebalance.page-size=7" })
+@ActiveProfiles("rebalance")
+class ShardRebalancerTest {
+
+	// The shards the data was placed on before the third shard was added
+	private static final int OLD_SHARDS = 2;
+	private static final int NEW_SHARDS = 3;
+
+	@Autowired
+	private ShardRebalancer shardRebalancer;
+
+	@Autowired
+	private UserDirectory userDirectory;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void usersMoveToTheirNewShardWithReferralsAndCommissions() {
+		List<String> userIds = new ArrayList<>();
+		for (int i = 0; i < 60; i++) {
+			userIds.add(UUID.randomUUID().toString());
+		}
+		for (int i = 0; i < userIds.size(); i++) {
+			// Each user refers the next one, so referrals cross the old and the new placement
+			seed(i, userIds.get(i), userIds.get((i + 1) % userIds.size()));
+		}
+		long expectedMoves = userIds.stream()
+				.filter(id -> ShardKeys.shardFor(id, NEW_SHARDS) != ShardKeys.shardFor(id, OLD_SHARDS)).count();
+		assertTrue(expectedMoves > 0);
+
+		assertEquals(expectedMoves, shardRebalancer.rebalance());
+
+		for (String userId : userIds) {
+			int shard = ShardKeys.shardFor(userId, NEW_SHARDS);
+			for (int other = 0; other < NEW_SHARDS; other++) {
+				long expected = other == shard ? 1L : 0L;
+				assertEquals(expected, countOnShard(other, "SELECT COUNT(*) FROM users WHERE u_id = ?", userId));
+				assertEquals(expected,
+						countOnShard(other, "SELECT COUNT(*) FROM user_referrals WHERE referrer_id = ?", userId));
+				assertEquals(expected,
+						countOnShard(other, "SELECT COUNT(*) FROM commissions WHERE user_id = ?", userId));
+			}
+			assertEquals(shard, userDirectory.findByEmail(userId + "@example.com").get().getShard());
+		}
+		// Nothing is left to move, a second run is a no-op
+		assertEquals(0L, shardRebalancer.rebalance());
+	}
+
+	private void seed(int index, String userId, String referredId) {
+		int shard = ShardKeys.shardFor(userId, OLD_SHARDS);
+		Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+		userDirectory.claim(userId, userId + "@example.com", shard);
+		ShardContext.call(shard, () -> {
+			jdbcTemplate.update("INSERT INTO users (u_id, full_name, email, password, user_role, total_sales, "
+					+ "created_ts, updated_ts) VALUES (?, 'Test User', ?, 'password', 'USER', 100.00, ?, ?)",
+					userId, userId + "@example.com", now, now);
+			// Explicit ids, unique across shards like the interleaved MariaDB ids
+			jdbcTemplate.update("INSERT INTO user_referrals (id, level, referrer_id, referred_id, referral_date, "
+					+ "created_ts, updated_ts) VALUES (?, 1, ?, ?, ?, ?, ?)", index + 1, userId, referredId, now, now, now);
+			jdbcTemplate.update("INSERT INTO commissions (commission_id, user_id, commission_amount, commission_date, "
+					+ "status) VALUES (?, ?, 10.00, ?, 'PENDING')", index + 1, userId, now);
+			return null;
+		});
+	}
+
+	private long countOnShard(int shard, String sql, Object... args) {
+		return ShardContext.call(shard, () -> jdbcTemplate.queryForObject(sql, Long.class, args));
+	}
+}
@@ -0,0 +1,251 @@
+package com.blockstars.blockstarsassignment.sharding;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.blockstars.blockstarsassignment.domain.User;
+import com.blockstars.blockstarsassignment.dto.CommissionDto;
+import com.blockstars.blockstarsassignment.dto.SalesEventDto;
+import com.blockstars.blockstarsassignment.dto.UserDto;
+import com.blockstars.blockstarsassignment.service.SalesEventService;
+import com.blockstars.blockstarsassignment.service.UserService;
+import com.zaxxer.hikari.HikariDataSource;
+
+@SpringBootTest(properties = {
+		"sharding.enabled=true",
+		"sharding.shards[0].url=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1",
+		"sharding.shards[0].username=sa",
+		"sharding.shards[1].url=jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1",
+		"sharding.shards[1].username=sa",
+		"sharding.global.url=jdbc:h2:mem:directory;DB_CLOSE_DELAY=-1",
+		"sharding.global.username=sa",
+		"sharding.schema-script=classpath:sharding-schema.sql",
+		"spring.jpa.hibernate.ddl-auto=none",
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.show-sql=false",
+		// Own cache manager with the regular regions, the shards' ids must not meet entities cached by other test contexts
+		"spring.jpa.properties.hibernate.javax.cache.uri=application.conf",
+		"scheduling.enabled=false",
+		"commissions.archive.enabled=false" })
+class ShardingTest {
+
+	private static final int SHARDS = 2;
+
+	private static boolean idsOffset;
+
+	@Autowired
+	private ShardRouter shardRouter;
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private SalesEventService salesEventService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void offsetShardIds() {
+		// Stand-in for the MariaDB auto_increment_offset set per shard, keeps ids unique across shards
+		if (!idsOffset) {
+			ShardContext.call(1, () -> {
+				jdbcTemplate.execute("ALTER TABLE user_referrals ALTER COLUMN id RESTART WITH 1000001");
+				jdbcTemplate.execute("ALTER TABLE commissions ALTER COLUMN commission_id RESTART WITH 1000001");
+				return null;
+			});
+			idsOffset = true;
+		}
+	}
+
+	private static String idOnShard(int shard) {
+		String id;
+		do {
+			id = UUID.randomUUID().toString();
+		} while (ShardKeys.shardFor(id, SHARDS) != shard);
+		return id;
+	}
+
+	private User register(int shard, BigDecimal totalSales) {
+		String userId = idOnShard(shard);
+		UserDto payload = new UserDto();
+		payload.setFullName("Test User");
+		payload.setEmail(userId + "@example.com");
+		payload.setPassword("password");
+		payload.setTotalSales(totalSales);
+		return shardRouter.registerUser(userId, payload.getEmail(), id -> userService.registerUser(id, payload));
+	}
+
+	private long countOnShard(int shard, String sql, Object... args) {
+		return ShardContext.call(shard, () -> jdbcTemplate.queryForObject(sql, Long.class, args));
+	}
+
+	@Test
+	void shardKeyIsStableAndInRange() {
+		for (int i = 0; i < 1000; i++) {
+			String id = UUID.randomUUID().toString();
+			int shard = ShardKeys.shardFor(id, 4);
+			assertTrue(shard >= 0 && shard < 4);
+			assertEquals(shard, ShardKeys.shardFor(new String(id), 4));
+		}
+	}
+
+	@Test
+	void usersAreStoredOnTheShardOfTheirId() {
+		for (int shard = 0; shard < SHARDS; shard++) {
+			User user = register(shard, BigDecimal.ZERO);
+			for (int other = 0; other < SHARDS; other++) {
+				assertEquals(other == shard ? 1L : 0L,
+						countOnShard(other, "SELECT COUNT(*) FROM users WHERE u_id = ?", user.getUId()));
+			}
+		}
+	}
+
+	@Test
+	void referralsAndCommissionsStayOnTheReferrersShard() {
+		for (int shard = 0; shard < SHARDS; shard++) {
+			User referrer = register(shard, BigDecimal.ZERO);
+			User referred = register(shard, new BigDecimal("100.00"));
+
+			assertFalse(shardRouter.findRemoteReferred(referrer.getUId(), referred.getEmail()).isPresent());
+			shardRouter.onShardOf(referrer.getUId(), () -> {
+				userService.referUser(referrer.getUId(), referred.getEmail(), 1);
+				return null;
+			});
+			List<CommissionDto> commissions = shardRouter.onShardOf(referrer.getUId(),
+					() -> userService.viewCommissions(referrer.getUId()));
+
+			assertEquals(1, commissions.size());
+			assertEquals(new BigDecimal("10.00"), commissions.get(0).getCommissionAmount());
+			int otherShard = (shard + 1) % SHARDS;
+			assertEquals(0L, countOnShard(otherShard,
+					"SELECT COUNT(*) FROM user_referrals WHERE referrer_id = ?", referrer.getUId()));
+			assertEquals(0L, countOnShard(otherShard,
+					"SELECT COUNT(*) FROM commissions WHERE user_id = ?", referrer.getUId()));
+		}
+	}
+
+	@Test
+	void growingTheShardCountOnlyMovesUsersToTheNewShard() {
+		int ids = 10000;
+		int moved = 0;
+		for (int i = 0; i < ids; i++) {
+			String id = UUID.randomUUID().toString();
+			int before = ShardKeys.shardFor(id, 4);
+			int after = ShardKeys.shardFor(id, 5);
+			if (before != after) {
+				assertEquals(4, after);
+				moved++;
+			}
+		}
+		// About a fifth of the users move, modulo placement would move four fifths
+		assertTrue(moved > ids * 0.17 && moved < ids * 0.23, "moved " + moved);
+	}
+
+	@Test
+	void crossShardReferralEarnsCommissionFromTheReferredShard() {
+		User referrer = register(0, BigDecimal.ZERO);
+		User referred = register(1, new BigDecimal("100.00"));
+
+		Optional<String> remoteReferredId = shardRouter.findRemoteReferred(referrer.getUId(), referred.getEmail());
+		assertEquals(Optional.of(referred.getUId()), remoteReferredId);
+		shardRouter.onShardOf(referrer.getUId(), () -> {
+			userService.referRemoteUser(referrer.getUId(), remoteReferredId.get(), 1);
+			return null;
+		});
+		List<CommissionDto> commissions = shardRouter.onShardOf(referrer.getUId(),
+				() -> userService.viewCommissions(referrer.getUId()));
+
+		assertEquals(1, commissions.size());
+		assertEquals(new BigDecimal("10.00"), commissions.get(0).getCommissionAmount());
+		assertEquals(1L, countOnShard(0, "SELECT COUNT(*) FROM user_referrals WHERE referrer_id = ? AND referred_id = ?",
+				referrer.getUId(), referred.getUId()));
+		assertEquals(0L, countOnShard(1, "SELECT COUNT(*) FROM user_referrals WHERE referrer_id = ?",
+				referrer.getUId()));
+	}
+
+	@Test
+	void salesOnTheReferredShardBumpTheRemoteReferrersVersion() {
+		User referrer = register(0, BigDecimal.ZERO);
+		User referred = register(1, BigDecimal.ZERO);
+		shardRouter.onShardOf(referrer.getUId(), () -> {
+			userService.referRemoteUser(referrer.getUId(), referred.getUId(), 1);
+			return null;
+		});
+		long before = countOnShard(0, "SELECT commission_version FROM users WHERE u_id = ?", referrer.getUId());
+
+		SalesEventDto sale = new SalesEventDto();
+		sale.setUserId(referred.getUId());
+		sale.setAmount(new BigDecimal("5.00"));
+		salesEventService.ingest(Collections.singletonList(sale));
+		salesEventService.flush();
+
+		assertEquals(before + 1,
+				countOnShard(0, "SELECT commission_version FROM users WHERE u_id = ?", referrer.getUId()));
+	}
+
+	@Test
+	void closingTheRoutingDataSourceClosesTheShardPools() throws IOException {
+		HikariDataSource pool = new HikariDataSource();
+		pool.setJdbcUrl("jdbc:h2:mem:closed-shard");
+		pool.setUsername("sa");
+		ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource(Collections.singletonList(pool));
+
+		routingDataSource.close();
+
+		assertTrue(pool.isClosed());
+	}
+
+	@Test
+	void emailIsUniqueAcrossShards() {
+		User existing = register(0, BigDecimal.ZERO);
+		String userId = idOnShard(1);
+		UserDto payload = new UserDto();
+		payload.setFullName("Duplicate User");
+		payload.setEmail(existing.getEmail());
+		payload.setPassword("password");
+
+		assertThrows(IllegalArgumentException.class, () -> shardRouter.registerUser(userId, payload.getEmail(),
+				id -> userService.registerUser(id, payload)));
+		assertEquals(0L, countOnShard(1, "SELECT COUNT(*) FROM users WHERE u_id = ?", userId));
+	}
+
+	@Test
+	void committedShardsAreNotAppliedAgainWhenTheWindowIsRetried() {
+		User good = register(0, BigDecimal.ZERO);
+		User bad = register(1, BigDecimal.ZERO);
+		// Any increment overflows DECIMAL(19,2), so the window keeps failing on shard 1
+		ShardContext.call(1, () -> jdbcTemplate.update("UPDATE users SET total_sales = ? WHERE u_id = ?",
+				new BigDecimal("99999999999999999.99"), bad.getUId()));
+		SalesEventDto goodSale = new SalesEventDto();
+		goodSale.setUserId(good.getUId());
+		goodSale.setAmount(new BigDecimal("5.00"));
+		SalesEventDto badSale = new SalesEventDto();
+		badSale.setUserId(bad.getUId());
+		badSale.setAmount(new BigDecimal("1.00"));
+		salesEventService.ingest(Arrays.asList(goodSale, badSale));
+
+		salesEventService.flush();
+		salesEventService.flush();
+		salesEventService.shutdown();
+
+		assertEquals(new BigDecimal("5.00"), ShardContext.call(0, () -> jdbcTemplate.queryForObject(
+				"SELECT total_sales FROM users WHERE u_id = ?", BigDecimal.class, good.getUId())));
+	}
+}
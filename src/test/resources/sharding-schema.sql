@@ -0,0 +1,38 @@
+CREATE TABLE IF NOT EXISTS users (
+    u_id VARCHAR(255) NOT NULL PRIMARY KEY,
+    full_name VARCHAR(255) NOT NULL,
+    email VARCHAR(255) NOT NULL UNIQUE,
+    password VARCHAR(255) NOT NULL,
+    user_role VARCHAR(255) NOT NULL,
+    total_sales DECIMAL(19,2),
+    commission_version BIGINT DEFAULT 0 NOT NULL,
+    created_by VARCHAR(255),
+    created_ts TIMESTAMP NOT NULL,
+    updated_by VARCHAR(255),
+    updated_ts TIMESTAMP NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS user_referrals (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    level INT,
+    referrer_id VARCHAR(255),
+    referred_id VARCHAR(255),
+    referral_date TIMESTAMP,
+    created_by VARCHAR(255),
+    created_ts TIMESTAMP NOT NULL,
+    updated_by VARCHAR(255),
+    updated_ts TIMESTAMP NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS commissions (
+    commission_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id VARCHAR(255),
+    commission_amount DECIMAL(19,2),
+    commission_date TIMESTAMP NOT NULL,
+    commission_type VARCHAR(255),
+    description VARCHAR(255),
+    status VARCHAR(255),
+    payment_date TIMESTAMP,
+    currency VARCHAR(255),
+    transaction_reference VARCHAR(255)
+);